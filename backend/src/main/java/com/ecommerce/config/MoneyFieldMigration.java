@@ -0,0 +1,92 @@
+package com.ecommerce.config;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Converts money fields that older versions stored as strings (the Spring Data default for
+ * BigDecimal) into Decimal128, so they can be changed with $inc, summed on the server and
+ * compared numerically in range queries. Documents that are already converted don't match
+ * the filters, so this is a no-op after the first run.
+ */
+@Component
+@RequiredArgsConstructor
+public class MoneyFieldMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(MoneyFieldMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void migrate() {
+        try {
+            migrateCarts();
+            migrateProducts();
+        } catch (RuntimeException e) {
+            log.warn("Could not migrate money fields to Decimal128: {}", e.getMessage());
+        }
+    }
+
+    private void migrateCarts() {
+        Document filter = new Document("$or", List.of(
+                isString("totalPrice"),
+                isString("items.price"),
+                isString("items.subtotal")));
+
+        Document convertItems = new Document("$map", new Document()
+                .append("input", new Document("$ifNull", List.of("$items", List.of())))
+                .append("in", new Document("$mergeObjects", List.of("$$this", new Document()
+                        .append("price", toDecimal("$$this.price"))
+                        .append("subtotal", toDecimal("$$this.subtotal"))))));
+
+        UpdateResult result = mongoTemplate.getCollection("carts").updateMany(filter, List.of(
+                new Document("$set", new Document()
+                        .append("totalPrice", toDecimal("$totalPrice"))
+                        .append("items", convertItems))));
+
+        if (result.getModifiedCount() > 0) {
+            log.info("Converted money fields of {} carts to Decimal128", result.getModifiedCount());
+        }
+    }
+
+    private void migrateProducts() {
+        Document filter = new Document("$or", List.of(
+                isString("price"),
+                isString("discountPrice"),
+                new Document("effectivePrice", new Document("$exists", false))));
+
+        // A missing or null discountPrice means no discount and must stay that way
+        Document discountPrice = new Document("$cond", List.of(
+                new Document("$eq", List.of(new Document("$type", "$discountPrice"), "string")),
+                new Document("$toDecimal", "$discountPrice"),
+                "$discountPrice"));
+
+        UpdateResult result = mongoTemplate.getCollection("products").updateMany(filter, List.of(
+                new Document("$set", new Document()
+                        .append("price", toDecimal("$price"))
+                        .append("discountPrice", discountPrice)),
+                new Document("$set", new Document("effectivePrice",
+                        new Document("$ifNull", List.of("$discountPrice", "$price"))))));
+
+        if (result.getModifiedCount() > 0) {
+            log.info("Converted prices of {} products to Decimal128", result.getModifiedCount());
+        }
+    }
+
+    private static Document isString(String field) {
+        return new Document(field, new Document("$type", "string"));
+    }
+
+    private static Document toDecimal(String fieldRef) {
+        return new Document("$toDecimal", new Document("$ifNull", List.of(fieldRef, 0)));
+    }
+}
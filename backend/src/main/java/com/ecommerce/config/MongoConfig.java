@@ -1,11 +1,20 @@
 package com.ecommerce.config;
 
+import com.ecommerce.model.Money;
+import org.bson.types.Decimal128;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import org.springframework.data.mongodb.core.mapping.event.ValidatingMongoEventListener;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
+import java.math.BigDecimal;
+import java.util.List;
+
 @Configuration
 @EnableMongoAuditing
 public class MongoConfig {
@@ -19,4 +28,50 @@ public class MongoConfig {
     public LocalValidatorFactoryBean validator() {
         return new LocalValidatorFactoryBean();
     }
+    
+    /**
+     * {@link Money} is written as Decimal128 so it can be used with $inc and summed in
+     * aggregations. It is read from Decimal128, and also from the decimal strings older
+     * documents hold, so existing data needs no migration to be readable.
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new MoneyToDecimal128Converter(),
+                new Decimal128ToMoneyConverter(),
+                new StringToMoneyConverter(),
+                new DoubleToMoneyConverter()));
+    }
+    
+    @WritingConverter
+    static class MoneyToDecimal128Converter implements Converter<Money, Decimal128> {
+        @Override
+        public Decimal128 convert(Money source) {
+            return new Decimal128(source.toBigDecimal());
+        }
+    }
+    
+    @ReadingConverter
+    static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source.bigDecimalValue());
+        }
+    }
+    
+    @ReadingConverter
+    static class StringToMoneyConverter implements Converter<String, Money> {
+        @Override
+        public Money convert(String source) {
+            return Money.parse(source);
+        }
+    }
+    
+    @ReadingConverter
+    static class DoubleToMoneyConverter implements Converter<Double, Money> {
+        @Override
+        public Money convert(Double source) {
+            return Money.of(BigDecimal.valueOf(source));
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package com.ecommerce.config;
+
+import com.ecommerce.model.Product;
+import com.ecommerce.service.ProductSort;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reconciles each collection's indexes with the ones declared in code: the
+ * {@code @Indexed}/{@code @CompoundIndex} annotations on the document classes plus the
+ * {@link ProductSort} indexes. Spring Data no longer creates annotated indexes automatically
+ * (auto-index-creation is off by default), so without this the annotations are documentation
+ * only.
+ * <p>
+ * Missing indexes are created. An index whose keys or uniqueness no longer match its
+ * declaration, or that is no longer declared at all, is reported, and dropped (and recreated
+ * where declared) only when {@code mongo.indexes.drop-stale} is set, since dropping an index
+ * a running query relies on can't be undone quickly on a large collection.
+ */
+@Component
+@RequiredArgsConstructor
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+
+    @Value("${mongo.indexes.drop-stale:false}")
+    private boolean dropStale;
+
+    // Runs before other startup listeners so their queries see the indexes
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ContextRefreshedEvent.class)
+    public void ensureIndexes() {
+        for (Map.Entry<String, List<IndexDefinition>> entry : declaredIndexes().entrySet()) {
+            try {
+                reconcile(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile indexes on {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The indexes the application expects, by collection.
+     */
+    public Map<String, List<IndexDefinition>> declaredIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Map<String, List<IndexDefinition>> declared = new LinkedHashMap<>();
+
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            List<IndexDefinition> definitions = declared.computeIfAbsent(entity.getCollection(), ignored -> new ArrayList<>());
+            resolver.resolveIndexFor(entity.getTypeInformation()).forEach(definitions::add);
+        }
+
+        List<IndexDefinition> productIndexes = declared.computeIfAbsent(
+                mongoTemplate.getCollectionName(Product.class), ignored -> new ArrayList<>());
+        for (ProductSort sort : ProductSort.values()) {
+            String name = sort.index().getIndexOptions().getString("name");
+            // Ascending and descending sorts on one field share an index
+            if (productIndexes.stream().noneMatch(definition -> name.equals(nameOf(definition)))) {
+                productIndexes.add(sort.index());
+            }
+        }
+        return declared;
+    }
+
+    private void reconcile(String collection, List<IndexDefinition> definitions) {
+        Map<String, Document> existing = new HashMap<>();
+        for (Document index : mongoTemplate.getCollection(collection).listIndexes()) {
+            existing.put(index.getString("name"), index);
+        }
+
+        IndexOperations indexOps = mongoTemplate.indexOps(collection);
+        for (IndexDefinition definition : definitions) {
+            String name = nameOf(definition);
+            Document current = name == null ? null : existing.remove(name);
+            if (current != null && !matches(current, definition)) {
+                if (!dropStale) {
+                    log.warn("Index {} on {} is {} but declared as {}; set mongo.indexes.drop-stale to rebuild it",
+                            name, collection, current.get("key"), definition.getIndexKeys());
+                    continue;
+                }
+                log.info("Rebuilding index {} on {} as {}", name, collection, definition.getIndexKeys());
+                indexOps.dropIndex(name);
+            }
+            try {
+                indexOps.ensureIndex(definition);
+            } catch (RuntimeException e) {
+                // Don't block startup on e.g. a unique index that existing data violates
+                log.warn("Could not create index {} on {}: {}", definition.getIndexKeys(), collection, e.getMessage());
+            }
+        }
+
+        existing.remove("_id_");
+        for (String name : existing.keySet()) {
+            if (dropStale) {
+                log.info("Dropping undeclared index {} on {}", name, collection);
+                indexOps.dropIndex(name);
+            } else {
+                log.info("Index {} on {} is not declared by the application", name, collection);
+            }
+        }
+    }
+
+    private static String nameOf(IndexDefinition definition) {
+        return definition.getIndexOptions().getString("name");
+    }
+
+    private static boolean matches(Document current, IndexDefinition definition) {
+        Document options = definition.getIndexOptions();
+        return normalizeKeys(current.get("key", Document.class)).equals(normalizeKeys(definition.getIndexKeys()))
+                && current.getBoolean("unique", false) == options.getBoolean("unique", false)
+                && current.getBoolean("sparse", false) == options.getBoolean("sparse", false)
+                && Objects.equals(asLong(current.get("expireAfterSeconds")), asLong(options.get("expireAfterSeconds")));
+    }
+
+    // The server may report 1 as an int, long or double; key order is significant
+    private static List<Map.Entry<String, Object>> normalizeKeys(Document keys) {
+        List<Map.Entry<String, Object>> normalized = new ArrayList<>();
+        keys.forEach((field, direction) -> normalized.add(
+                Map.entry(field, direction instanceof Number number ? (Object) number.intValue() : direction)));
+        return normalized;
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
@@ -7,22 +7,28 @@ import com.ecommerce.dto.response.CategoryResponse;
 import com.ecommerce.dto.response.DashboardStatsResponse;
 import com.ecommerce.dto.response.OrderResponse;
 import com.ecommerce.dto.response.ProductResponse;
+import com.ecommerce.dto.response.SalesTimeseriesResponse;
 import com.ecommerce.dto.response.UserResponse;
 import com.ecommerce.model.Order;
 import com.ecommerce.service.CategoryService;
 import com.ecommerce.service.DashboardService;
 import com.ecommerce.service.OrderService;
 import com.ecommerce.service.ProductService;
+import com.ecommerce.service.SalesAnalyticsService;
 import com.ecommerce.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/admin")
 @PreAuthorize("hasRole('ADMIN')")
@@ -34,6 +40,7 @@ public class AdminController {
     private final OrderService orderService;
     private final UserService userService;
     private final DashboardService dashboardService;
+    private final SalesAnalyticsService salesAnalyticsService;
     
     // ========== Dashboard ==========
     
@@ -43,6 +50,24 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
     
+    // ========== Analytics ==========
+    
+    @GetMapping("/analytics/timeseries")
+    public ResponseEntity<ApiResponse<SalesTimeseriesResponse>> getSalesTimeseries(
+            @RequestParam(defaultValue = "DAY") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String categoryId) {
+        SalesTimeseriesResponse timeseries = salesAnalyticsService.getTimeseries(granularity, from, to, categoryId);
+        return ResponseEntity.ok(ApiResponse.success(timeseries));
+    }
+    
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<ApiResponse<Map<String, Long>>> rebuildSalesRollups() {
+        long buckets = salesAnalyticsService.rebuildRollups();
+        return ResponseEntity.ok(ApiResponse.success("Sales rollups rebuilt", Map.of("buckets", buckets)));
+    }
+    
     // ========== Product Management ==========
     
     @GetMapping("/products")
@@ -100,10 +125,15 @@ public class AdminController {
     // ========== Order Management ==========
     
     @GetMapping("/orders")
-    public ResponseEntity<ApiResponse<Page<OrderResponse>>> getAllOrders(
+    public ResponseEntity<ApiResponse<?>> getAllOrders(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
+        if (cursor != null) {
+            return ResponseEntity.ok(ApiResponse.success(orderService.getAllOrders(cursor, size, withTotal)));
+        }
         Page<OrderResponse> orders = orderService.getAllOrders(
                 PageRequest.of(page, size, Sort.by("createdAt").descending()));
         return ResponseEntity.ok(ApiResponse.success(orders));
@@ -146,10 +176,15 @@ public class AdminController {
     // ========== User Management ==========
     
     @GetMapping("/users")
-    public ResponseEntity<ApiResponse<Page<UserResponse>>> getAllUsers(
+    public ResponseEntity<ApiResponse<?>> getAllUsers(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
+        if (cursor != null) {
+            return ResponseEntity.ok(ApiResponse.success(userService.getAllUsers(cursor, size, withTotal)));
+        }
         Page<UserResponse> users = userService.getAllUsers(
                 PageRequest.of(page, size, Sort.by("createdAt").descending()));
         return ResponseEntity.ok(ApiResponse.success(users));
@@ -26,10 +26,15 @@ public class OrderController {
     }
     
     @GetMapping
-    public ResponseEntity<ApiResponse<Page<OrderResponse>>> getUserOrders(
+    public ResponseEntity<ApiResponse<?>> getUserOrders(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
+        if (cursor != null) {
+            return ResponseEntity.ok(ApiResponse.success(orderService.getUserOrders(cursor, size, withTotal)));
+        }
         Page<OrderResponse> orders = orderService.getUserOrders(
                 PageRequest.of(page, size, Sort.by("createdAt").descending()));
         return ResponseEntity.ok(ApiResponse.success(orders));
@@ -41,6 +46,12 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(order));
     }
     
+    @GetMapping("/number/{orderNumber}")
+    public ResponseEntity<ApiResponse<OrderResponse>> getOrderByNumber(@PathVariable String orderNumber) {
+        OrderResponse order = orderService.getOrderByNumber(orderNumber);
+        return ResponseEntity.ok(ApiResponse.success(order));
+    }
+    
     @PostMapping("/{id}/cancel")
     public ResponseEntity<ApiResponse<OrderResponse>> cancelOrder(@PathVariable String id) {
         OrderResponse order = orderService.cancelOrder(id);
@@ -1,17 +1,24 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.request.ProductQueryRequest;
 import com.ecommerce.dto.response.ApiResponse;
+import com.ecommerce.dto.response.ProductQueryResponse;
 import com.ecommerce.dto.response.ProductResponse;
+import com.ecommerce.dto.response.SuggestionResponse;
+import com.ecommerce.service.ProductQueryService;
 import com.ecommerce.service.ProductService;
+import com.ecommerce.service.ProductSort;
+import com.ecommerce.service.PurchaseService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -19,26 +26,46 @@ import java.math.BigDecimal;
 public class ProductController {
     
     private final ProductService productService;
+    private final ProductQueryService productQueryService;
+    private final PurchaseService purchaseService;
     
     @GetMapping
-    public ResponseEntity<ApiResponse<Page<ProductResponse>>> getAllProducts(
+    public ResponseEntity<ApiResponse<?>> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
-        Sort sort = sortDir.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        ProductSort sort = ProductSort.from(sortBy, sortDir);
+        if (cursor != null) {
+            return ResponseEntity.ok(ApiResponse.success(
+                    productService.getAllProducts(cursor, size, sort, withTotal)));
+        }
+        Pageable pageable = PageRequest.of(page, size, sort.toSort());
         Page<ProductResponse> products = productService.getAllProducts(pageable);
         return ResponseEntity.ok(ApiResponse.success(products));
     }
     
+    @GetMapping("/query")
+    public ResponseEntity<ApiResponse<ProductQueryResponse>> queryProducts(ProductQueryRequest request) {
+        ProductQueryResponse response = productQueryService.query(request);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductResponse>> getProductById(@PathVariable String id) {
         ProductResponse product = productService.getProductById(id);
         return ResponseEntity.ok(ApiResponse.success(product));
     }
     
+    @GetMapping("/{id}/purchase-status")
+    public ResponseEntity<ApiResponse<Map<String, Boolean>>> getPurchaseStatus(@PathVariable String id) {
+        boolean purchased = purchaseService.hasCurrentUserPurchased(id);
+        return ResponseEntity.ok(ApiResponse.success(Map.of("purchased", purchased)));
+    }
+    
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<ApiResponse<Page<ProductResponse>>> getProductsByCategory(
             @PathVariable String categoryId,
@@ -71,6 +98,15 @@ public class ProductController {
         return ResponseEntity.ok(ApiResponse.success(products));
     }
     
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<List<SuggestionResponse>>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        
+        List<SuggestionResponse> suggestions = productService.suggest(q, Math.min(Math.max(limit, 1), 20));
+        return ResponseEntity.ok(ApiResponse.success(suggestions));
+    }
+    
     @GetMapping("/filter/price")
     public ResponseEntity<ApiResponse<Page<ProductResponse>>> filterByPrice(
             @RequestParam BigDecimal min,
@@ -0,0 +1,40 @@
+package com.ecommerce.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Filters for the combined product query. Every filter is optional and they are ANDed;
+ * several brands or tags match any of them.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductQueryRequest {
+    private String q;
+    private String categoryId;
+    private List<String> brands;
+    private List<String> tags;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Double minRating;
+    private Boolean inStock;
+    
+    @Builder.Default
+    private int page = 0;
+    
+    @Builder.Default
+    private int size = 12;
+    
+    // createdAt, price, averageRating, name or relevance (the default when q is set)
+    private String sortBy;
+    
+    @Builder.Default
+    private String sortDir = "desc";
+}
@@ -11,12 +11,14 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class AuthResponse {
     private String token;
+    private String refreshToken;
     private String type;
     private UserResponse user;
     
-    public static AuthResponse of(String token, UserResponse user) {
+    public static AuthResponse of(String token, String refreshToken, UserResponse user) {
         return AuthResponse.builder()
                 .token(token)
+                .refreshToken(refreshToken)
                 .type("Bearer")
                 .user(user)
                 .build();
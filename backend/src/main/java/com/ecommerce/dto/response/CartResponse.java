@@ -1,12 +1,12 @@
 package com.ecommerce.dto.response;
 
 import com.ecommerce.model.Cart;
+import com.ecommerce.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,7 +18,7 @@ public class CartResponse {
     private String id;
     private String userId;
     private List<CartItemDto> items;
-    private BigDecimal totalPrice;
+    private Money totalPrice;
     private int totalItems;
     
     @Data
@@ -29,9 +29,9 @@ public class CartResponse {
         private String productId;
         private String productName;
         private String productImage;
-        private BigDecimal price;
+        private Money price;
         private int quantity;
-        private BigDecimal subtotal;
+        private Money subtotal;
     }
     
     public static CartResponse fromCart(Cart cart) {
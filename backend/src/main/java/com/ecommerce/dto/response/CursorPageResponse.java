@@ -0,0 +1,38 @@
+package com.ecommerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@code nextCursor} back as {@code cursor} to
+ * get the following page; it is null on the last page. The total is only filled in when
+ * requested, and may be an estimate for unfiltered collections.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+    private boolean totalEstimated;
+    
+    public <R> CursorPageResponse<R> map(Function<? super T, ? extends R> mapper) {
+        return CursorPageResponse.<R>builder()
+                .content(content.stream().<R>map(mapper).toList())
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .totalElements(totalElements)
+                .totalEstimated(totalEstimated)
+                .build();
+    }
+}
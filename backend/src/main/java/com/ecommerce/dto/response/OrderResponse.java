@@ -1,12 +1,12 @@
 package com.ecommerce.dto.response;
 
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,10 +24,10 @@ public class OrderResponse {
     private String orderStatus; // Alias for status
     private List<OrderItemDto> items;
     private ShippingAddressDto shippingAddress;
-    private BigDecimal subtotal;
-    private BigDecimal shippingCost;
-    private BigDecimal tax;
-    private BigDecimal totalAmount;
+    private Money subtotal;
+    private Money shippingCost;
+    private Money tax;
+    private Money totalAmount;
     private String status;
     private String paymentStatus;
     private String paymentMethod;
@@ -45,9 +45,9 @@ public class OrderResponse {
         private String productId;
         private String productName;
         private String productImage;
-        private BigDecimal price;
+        private Money price;
         private int quantity;
-        private BigDecimal subtotal;
+        private Money subtotal;
     }
     
     @Data
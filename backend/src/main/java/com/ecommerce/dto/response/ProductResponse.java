@@ -30,6 +30,8 @@ public class ProductResponse {
     private boolean featured;
     private double averageRating;
     private int reviewCount;
+    // Number of 1..5 star reviews
+    private List<Integer> ratingHistogram;
     private List<String> tags;
     private ProductSpecsDto specs;
     private LocalDateTime createdAt;
@@ -74,6 +76,8 @@ public class ProductResponse {
                 .featured(product.isFeatured())
                 .averageRating(product.getAverageRating())
                 .reviewCount(product.getReviewCount())
+                .ratingHistogram(product.getRatingHistogram() != null
+                        ? product.getRatingHistogram() : List.of(0, 0, 0, 0, 0))
                 .tags(product.getTags())
                 .specs(specsDto)
                 .createdAt(product.getCreatedAt())
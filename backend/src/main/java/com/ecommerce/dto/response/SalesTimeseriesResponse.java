@@ -0,0 +1,34 @@
+package com.ecommerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesTimeseriesResponse {
+    private String granularity;
+    private String categoryId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<Point> points;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private LocalDateTime bucketStart;
+        private BigDecimal revenue;
+        private long orderCount;
+        private long units;
+        private BigDecimal averageOrderValue;
+    }
+}
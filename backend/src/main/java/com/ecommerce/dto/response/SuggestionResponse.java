@@ -0,0 +1,25 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.search.ProductSuggester;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionResponse {
+    private String text;
+    private String type;
+    private String productId;
+    
+    public static SuggestionResponse fromSuggestion(ProductSuggester.Suggestion suggestion) {
+        return SuggestionResponse.builder()
+                .text(suggestion.text())
+                .type(suggestion.type().name())
+                .productId(suggestion.productId())
+                .build();
+    }
+}
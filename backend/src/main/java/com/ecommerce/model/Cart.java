@@ -10,7 +10,6 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,7 +30,7 @@ public class Cart {
     private List<CartItem> items = new ArrayList<>();
     
     @Builder.Default
-    private BigDecimal totalPrice = BigDecimal.ZERO;
+    private Money totalPrice = Money.ZERO;
     
     @Builder.Default
     private int totalItems = 0;
@@ -50,15 +49,19 @@ public class Cart {
         private String productId;
         private String productName;
         private String productImage;
-        private BigDecimal price;
+        private Money price;
         private int quantity;
-        private BigDecimal subtotal;
+        private Money subtotal;
     }
     
     public void recalculateTotals() {
-        this.totalItems = items.stream().mapToInt(CartItem::getQuantity).sum();
-        this.totalPrice = items.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        int quantity = 0;
+        long minorUnits = 0;
+        for (CartItem item : items) {
+            quantity += item.getQuantity();
+            minorUnits = Math.addExact(minorUnits, item.getSubtotal().getMinorUnits());
+        }
+        this.totalItems = quantity;
+        this.totalPrice = Money.ofMinor(minorUnits);
     }
 }
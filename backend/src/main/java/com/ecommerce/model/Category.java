@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -16,6 +18,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "categories")
+@CompoundIndex(name = "parentId_active", def = "{'parentId': 1, 'active': 1}")
 public class Category {
     @Id
     private String id;
@@ -23,10 +26,12 @@ public class Category {
     private String name;
     private String description;
     private String image;
+    @Indexed(unique = true, sparse = true)
     private String slug;
     
     private String parentId;
     
+    @Indexed
     @Builder.Default
     private boolean active = true;
     
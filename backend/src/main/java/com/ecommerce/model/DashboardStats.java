@@ -0,0 +1,44 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized dashboard counters. A single document (see {@link #GLOBAL_ID}) is kept
+ * current with atomic $inc deltas and periodically recomputed from the source collections.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "dashboard_stats")
+public class DashboardStats {
+    public static final String GLOBAL_ID = "global";
+    
+    @Id
+    private String id;
+    
+    // Stored as Decimal128 so it can be $inc'ed in place
+    @Field(targetType = FieldType.DECIMAL128)
+    @Builder.Default
+    private BigDecimal totalRevenue = BigDecimal.ZERO;
+    
+    private long totalOrders;
+    private long pendingOrders;
+    private long completedOrders;
+    private long totalProducts;
+    private long activeProducts;
+    private long lowStockProducts;
+    private long totalUsers;
+    
+    private LocalDateTime reconciledAt;
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A short-lived claim a shopper's cart has on a product's stock. There is one document per
+ * (product, user) pair, so concurrent shoppers never write to the same document. Expired
+ * holds are removed by {@code InventoryHoldService}'s sweeper rather than a TTL index, since
+ * the product's {@link InventoryHoldTotal} has to be decremented along with them.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "inventory_holds")
+@CompoundIndex(name = "productId_expiresAt", def = "{'productId': 1, 'expiresAt': 1}")
+public class InventoryHold {
+    @Id
+    private String id;
+    
+    private String productId;
+    
+    @Indexed
+    private String userId;
+    
+    private int quantity;
+    
+    @Indexed(name = "expiresAt")
+    private LocalDateTime expiresAt;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String productId, String userId) {
+        return productId + ":" + userId;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stripe of the number of units of a product currently held by carts. A product's held
+ * total is the sum of its stripes, keyed {@code productId:stripe}, so concurrent shoppers of
+ * a popular product mostly update different documents. Kept in step with the inventory_holds
+ * ledger by {@code InventoryHoldService}, so checking a new hold against stock is a
+ * conditional update instead of summing every hold on the product. {@code version} is bumped
+ * on every change so the reconciliation can tell whether the stripe moved while it was
+ * recomputing the total.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "inventory_hold_totals")
+public class InventoryHoldTotal {
+    @Id
+    private String id;
+    
+    private String productId;
+    
+    private int stripe;
+    
+    private int held;
+    
+    private long version;
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String productId, int stripe) {
+        return productId + ":" + stripe;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ecommerce.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a long count of minor units (paise/cents), so cart and order
+ * arithmetic doesn't allocate a BigDecimal per operation. Amounts are rounded half-up to
+ * {@link #SCALE} decimal places when created from a decimal, and arithmetic throws
+ * {@link ArithmeticException} on overflow rather than wrapping.
+ * <p>
+ * Serializes to JSON as a plain decimal number and is stored in MongoDB as Decimal128
+ * (see {@code MongoConfig}), so documents and API payloads look the same as with BigDecimal.
+ */
+public final class Money implements Comparable<Money> {
+    
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+    
+    private static final long MINOR_PER_MAJOR = 100;
+    
+    private final long minorUnits;
+    
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+    
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+    
+    public static Money ofMajor(long majorUnits) {
+        return ofMinor(Math.multiplyExact(majorUnits, MINOR_PER_MAJOR));
+    }
+    
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+    
+    public static Money parse(String amount) {
+        return amount == null || amount.isBlank() ? null : of(new BigDecimal(amount.trim()));
+    }
+    
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+    
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+    
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+    
+    public Money times(long quantity) {
+        return ofMinor(Math.multiplyExact(minorUnits, quantity));
+    }
+    
+    /**
+     * Multiplies by {@code percent}/100, rounding half-up to the minor unit, e.g. a tax rate.
+     */
+    public Money percent(long percent) {
+        long product = Math.multiplyExact(minorUnits, percent);
+        long quotient = product / MINOR_PER_MAJOR;
+        long remainder = product % MINOR_PER_MAJOR;
+        if (Math.abs(remainder) * 2 >= MINOR_PER_MAJOR) {
+            quotient += Long.signum(product);
+        }
+        return ofMinor(quotient);
+    }
+    
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+    
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+    
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+    
+    public boolean isGreaterThanOrEqualTo(Money other) {
+        return minorUnits >= other.minorUnits;
+    }
+    
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Money other && minorUnits == other.minorUnits);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+    
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -7,9 +7,11 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,10 +21,17 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "orders")
+@CompoundIndexes({
+        // Keyset pagination: newest first, _id breaks ties between equal timestamps
+        @CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "created", def = "{'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "status_created", def = "{'status': 1, 'createdAt': -1}")
+})
 public class Order {
     @Id
     private String id;
     
+    @Indexed(unique = true, sparse = true)
     private String orderNumber;
     private String userId;
     private String userName;
@@ -33,10 +42,10 @@ public class Order {
     
     private ShippingAddress shippingAddress;
     
-    private BigDecimal subtotal;
-    private BigDecimal shippingCost;
-    private BigDecimal tax;
-    private BigDecimal totalAmount;
+    private Money subtotal;
+    private Money shippingCost;
+    private Money tax;
+    private Money totalAmount;
     
     @Builder.Default
     private OrderStatus status = OrderStatus.PENDING;
@@ -65,11 +74,12 @@ public class Order {
     @AllArgsConstructor
     public static class OrderItem {
         private String productId;
+        private String categoryId;
         private String productName;
         private String productImage;
-        private BigDecimal price;
+        private Money price;
         private int quantity;
-        private BigDecimal subtotal;
+        private Money subtotal;
     }
     
     @Data
@@ -6,9 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -20,15 +20,19 @@ public class Payment {
     @Id
     private String id;
     
+    @Indexed(unique = true)
     private String orderId;
+    
+    @Indexed
     private String userId;
     
-    private BigDecimal amount;
+    private Money amount;
     private String currency;
     
     private PaymentMethod method;
     private PaymentStatus status;
     
+    @Indexed(unique = true, sparse = true)
     private String transactionId;
     private String gatewayResponse;
     
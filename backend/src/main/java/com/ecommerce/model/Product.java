@@ -7,7 +7,11 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -19,6 +23,13 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "products")
+@CompoundIndexes({
+        // Unfiltered listing sorts are covered by the ProductSort indexes (active, field, _id)
+        @CompoundIndex(name = "active_category_price", def = "{'active': 1, 'categoryId': 1, 'effectivePrice': 1}"),
+        @CompoundIndex(name = "featured_active", def = "{'featured': 1, 'active': 1}"),
+        @CompoundIndex(name = "categoryId", def = "{'categoryId': 1}"),
+        @CompoundIndex(name = "stockQuantity", def = "{'stockQuantity': 1}")
+})
 public class Product {
     @Id
     private String id;
@@ -27,8 +38,17 @@ public class Product {
     private String description;
     private String brand;
     
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal price;
+    
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal discountPrice;
+    
+    // The price a shopper pays, discountPrice if set and price otherwise. Maintained on every
+    // save so price filters and buckets can use an index instead of a computed expression.
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal effectivePrice;
+    
     private int discountPercentage;
     
     private String categoryId;
@@ -51,6 +71,11 @@ public class Product {
     @Builder.Default
     private int reviewCount = 0;
     
+    // Running aggregates behind averageRating, kept up to date by ProductRatingService.
+    // ratingHistogram holds the number of 1..5 star reviews; null until the first review.
+    private long ratingSum;
+    private List<Integer> ratingHistogram;
+    
     @Builder.Default
     private List<String> tags = new ArrayList<>();
     
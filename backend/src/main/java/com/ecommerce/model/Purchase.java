@@ -0,0 +1,43 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records that a user has received a product: one document per (user, product) pair holding
+ * the delivered orders that contained it. The id is derived from the pair, so "has this user
+ * bought this product" is a single _id lookup. The document is removed once no delivered
+ * order remains.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "purchases")
+public class Purchase {
+    @Id
+    private String id;
+    
+    @Indexed
+    private String userId;
+    
+    private String productId;
+    
+    @Builder.Default
+    private Set<String> orderIds = new HashSet<>();
+    
+    private LocalDateTime updatedAt;
+    
+    public static String idFor(String userId, String productId) {
+        return userId + ":" + productId;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single-use refresh token. Only a SHA-256 hash of the token is stored. Every refresh
+ * marks the presented token used and issues a new one in the same family; presenting a
+ * used token again means it leaked, and the whole family is revoked.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "refresh_tokens")
+public class RefreshToken {
+    @Id
+    private String id;
+    
+    @Indexed(unique = true)
+    private String tokenHash;
+    
+    @Indexed
+    private String familyId;
+    
+    private String userId;
+    private String email;
+    
+    // User.tokenVersion at issue time; bumping the user's version revokes the token
+    private long tokenVersion;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime usedAt;
+    
+    @Indexed(name = "expiresAt_ttl", expireAfter = "0s")
+    private LocalDateTime expiresAt;
+}
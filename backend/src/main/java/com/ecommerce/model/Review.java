@@ -7,6 +7,9 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -16,11 +19,17 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "reviews")
+@CompoundIndexes({
+        // One review per user and product
+        @CompoundIndex(name = "productId_userId", def = "{'productId': 1, 'userId': 1}", unique = true),
+        @CompoundIndex(name = "productId_createdAt", def = "{'productId': 1, 'createdAt': -1}")
+})
 public class Review {
     @Id
     private String id;
     
     private String productId;
+    @Indexed
     private String userId;
     private String userName;
     
@@ -0,0 +1,30 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's "helpful" vote on a review. The unique index allows one vote per user and review.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "review_votes")
+@CompoundIndex(name = "reviewId_userId", def = "{'reviewId': 1, 'userId': 1}", unique = true)
+public class ReviewVote {
+    @Id
+    private String id;
+    
+    private String reviewId;
+    private String userId;
+    
+    private LocalDateTime createdAt;
+}
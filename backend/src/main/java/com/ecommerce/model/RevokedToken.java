@@ -0,0 +1,31 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * An access token revoked before it expired, keyed by its jti. The entry is removed by
+ * the TTL index once the token would have expired anyway.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "revoked_tokens")
+public class RevokedToken {
+    @Id
+    private String id;
+    
+    @Indexed
+    private LocalDateTime revokedAt;
+    
+    @Indexed(name = "expiresAt_ttl", expireAfter = "0s")
+    private LocalDateTime expiresAt;
+}
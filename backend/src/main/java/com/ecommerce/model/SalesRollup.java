@@ -0,0 +1,57 @@
+package com.ecommerce.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Pre-aggregated sales figures for one time bucket. Buckets without a category hold
+ * order-level totals; category buckets hold the line-item subtotals for that category.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sales_rollups")
+@CompoundIndex(name = "granularity_category_bucket", def = "{'granularity': 1, 'categoryId': 1, 'bucketStart': 1}")
+public class SalesRollup {
+    @Id
+    private String id;
+    
+    private Granularity granularity;
+    private String categoryId;
+    private LocalDateTime bucketStart;
+    
+    @Field(targetType = FieldType.DECIMAL128)
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;
+    
+    private long orderCount;
+    private long units;
+    
+    public enum Granularity {
+        HOUR, DAY, MONTH;
+        
+        public LocalDateTime truncate(LocalDateTime time) {
+            return switch (this) {
+                case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+                case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            };
+        }
+    }
+    
+    public static String idFor(Granularity granularity, String categoryId, LocalDateTime bucketStart) {
+        return granularity.name() + ":" + (categoryId != null ? categoryId : "*") + ":" + bucketStart;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,10 +16,11 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "users")
+@CompoundIndex(name = "created", def = "{'createdAt': -1, '_id': -1}")
 public class User {
     @Id
     private String id;
@@ -42,6 +44,9 @@ public class User {
     
     private String profileImage;
     
+    // Bumped to revoke every access token issued before the change
+    private long tokenVersion;
+    
     @CreatedDate
     private LocalDateTime createdAt;
     
@@ -49,7 +54,7 @@ public class User {
     private LocalDateTime updatedAt;
     
     @Data
-    @Builder
+    @Builder(toBuilder = true)
     @NoArgsConstructor
     @AllArgsConstructor
     public static class Address {
@@ -8,9 +8,12 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends MongoRepository<Order, String> {
+    Optional<Order> findByOrderNumber(String orderNumber);
+    
     Page<Order> findByUserId(String userId, Pageable pageable);
     
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
@@ -1,13 +1,13 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.model.Product;
+import org.bson.types.Decimal128;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 @Repository
@@ -22,7 +22,7 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     Page<Product> searchByName(String name, Pageable pageable);
     
     @Query("{'active': true, 'price': {$gte: ?0, $lte: ?1}}")
-    Page<Product> findByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
+    Page<Product> findByPriceRange(Decimal128 minPrice, Decimal128 maxPrice, Pageable pageable);
     
     @Query("{'active': true, 'averageRating': {$gte: ?0}}")
     Page<Product> findByMinRating(double minRating, Pageable pageable);
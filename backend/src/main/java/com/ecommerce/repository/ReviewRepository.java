@@ -6,6 +6,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,8 @@ public interface ReviewRepository extends MongoRepository<Review, String> {
     
     List<Review> findByProductId(String productId);
     
+    List<Review> findByProductIdIn(Collection<String> productIds);
+    
     List<Review> findByUserId(String userId);
     
     Optional<Review> findByProductIdAndUserId(String productId, String userId);
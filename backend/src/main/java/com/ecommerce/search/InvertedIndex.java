@@ -0,0 +1,280 @@
+package com.ecommerce.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Term to document postings with BM25F scoring. Documents get dense int ordinals, and each
+ * posting packs the term's frequency in every field into one int, so a million-product
+ * catalog stays a few primitive arrays per term rather than an object per occurrence.
+ * Readers share a read lock; adding or removing a document takes the write lock.
+ */
+final class InvertedIndex {
+    
+    static final int FIELD_COUNT = 5;
+    
+    private static final int TF_BITS = 6;
+    private static final int TF_MASK = (1 << TF_BITS) - 1;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    
+    private final float[] fieldBoosts;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> ordinalsById = new HashMap<>();
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final long[] totalFieldLengths = new long[FIELD_COUNT];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<float[]> scratch = new ThreadLocal<>();
+    
+    private String[] ids = new String[1024];
+    private String[][] terms = new String[1024][];
+    private int[] fieldLengths = new int[1024 * FIELD_COUNT];
+    private int nextOrdinal;
+    private int documentCount;
+    
+    InvertedIndex(float[] fieldBoosts) {
+        this.fieldBoosts = fieldBoosts.clone();
+    }
+    
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Indexes the document, replacing any previous version with the same id.
+     *
+     * @param fields analyzed terms per field, in the order of the boosts
+     */
+    void put(String id, List<List<String>> fields) {
+        Map<String, Integer> packedFrequencies = new HashMap<>();
+        int[] lengths = new int[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            List<String> fieldTerms = fields.get(field);
+            lengths[field] = fieldTerms.size();
+            int shift = field * TF_BITS;
+            for (String term : fieldTerms) {
+                packedFrequencies.merge(term, 1 << shift, (packed, one) ->
+                        ((packed >>> shift) & TF_MASK) == TF_MASK ? packed : packed + one);
+            }
+        }
+        
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            int ordinal = allocateOrdinal();
+            ids[ordinal] = id;
+            terms[ordinal] = packedFrequencies.keySet().toArray(new String[0]);
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                fieldLengths[ordinal * FIELD_COUNT + field] = lengths[field];
+                totalFieldLengths[field] += lengths[field];
+            }
+            packedFrequencies.forEach((term, packed) ->
+                    postings.computeIfAbsent(term, ignored -> new Postings()).add(ordinal, packed));
+            ordinalsById.put(id, ordinal);
+            documentCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Scores every document containing at least one query term and returns one page of ids
+     * ordered by descending score, plus the total number of matches.
+     */
+    Hits search(List<String> queryTerms, int offset, int limit) {
+        Set<String> distinctTerms = new LinkedHashSet<>(queryTerms);
+        lock.readLock().lock();
+        try {
+            if (distinctTerms.isEmpty() || documentCount == 0) {
+                return new Hits(List.of(), 0);
+            }
+            
+            float[] scores = scratch(nextOrdinal);
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            float[] averageLengths = new float[FIELD_COUNT];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                averageLengths[field] = Math.max(1f, (float) totalFieldLengths[field] / documentCount);
+            }
+            
+            for (String term : distinctTerms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - termPostings.size + 0.5) / (termPostings.size + 0.5));
+                for (int i = 0; i < termPostings.size; i++) {
+                    int ordinal = termPostings.ordinals[i];
+                    float weightedTf = weightedTermFrequency(ordinal, termPostings.frequencies[i], averageLengths);
+                    if (scores[ordinal] == 0f) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = ordinal;
+                    }
+                    scores[ordinal] += (float) (idf * weightedTf / (K1 + weightedTf));
+                }
+            }
+            
+            List<String> page = topPage(scores, touched, touchedCount, offset, limit);
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0f;
+            }
+            return new Hits(page, touchedCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private float weightedTermFrequency(int ordinal, int packed, float[] averageLengths) {
+        float weighted = 0f;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            int tf = (packed >>> (field * TF_BITS)) & TF_MASK;
+            if (tf == 0) {
+                continue;
+            }
+            float lengthRatio = fieldLengths[ordinal * FIELD_COUNT + field] / averageLengths[field];
+            weighted += fieldBoosts[field] * tf / (1 - B + B * lengthRatio);
+        }
+        return weighted;
+    }
+    
+    private List<String> topPage(float[] scores, int[] touched, int touchedCount, int offset, int limit) {
+        int wanted = offset + limit;
+        if (limit <= 0 || offset >= touchedCount) {
+            return List.of();
+        }
+        
+        // Min-heap of the best `wanted` ordinals; ties go to the lower ordinal so that
+        // consecutive pages agree on the order
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(wanted, touchedCount) + 1, (a, b) -> {
+            int byScore = Float.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(b, a);
+        });
+        for (int i = 0; i < touchedCount; i++) {
+            heap.offer(touched[i]);
+            if (heap.size() > wanted) {
+                heap.poll();
+            }
+        }
+        
+        String[] ordered = new String[heap.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = ids[heap.poll()];
+        }
+        List<String> page = new ArrayList<>(limit);
+        for (int i = offset; i < ordered.length; i++) {
+            page.add(ordered[i]);
+        }
+        return page;
+    }
+    
+    private void removeLocked(String id) {
+        Integer ordinal = ordinalsById.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        for (String term : terms[ordinal]) {
+            Postings termPostings = postings.get(term);
+            if (termPostings != null && termPostings.remove(ordinal) && termPostings.size == 0) {
+                postings.remove(term);
+            }
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            totalFieldLengths[field] -= fieldLengths[ordinal * FIELD_COUNT + field];
+            fieldLengths[ordinal * FIELD_COUNT + field] = 0;
+        }
+        ids[ordinal] = null;
+        terms[ordinal] = null;
+        freeOrdinals.push(ordinal);
+        documentCount--;
+    }
+    
+    private int allocateOrdinal() {
+        if (!freeOrdinals.isEmpty()) {
+            return freeOrdinals.pop();
+        }
+        if (nextOrdinal == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            terms = Arrays.copyOf(terms, capacity);
+            fieldLengths = Arrays.copyOf(fieldLengths, capacity * FIELD_COUNT);
+        }
+        return nextOrdinal++;
+    }
+    
+    private float[] scratch(int capacity) {
+        float[] scores = scratch.get();
+        if (scores == null || scores.length < capacity) {
+            scores = new float[Math.max(capacity, 1024)];
+            scratch.set(scores);
+        }
+        return scores;
+    }
+    
+    record Hits(List<String> ids, int total) {
+    }
+    
+    /**
+     * One term's postings, sorted by ordinal so a document's posting is found by binary
+     * search. Ordinals are reused, so an add may land anywhere; both add and remove then
+     * shift the tail with a single array copy.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+        
+        void add(int ordinal, int packedFrequencies) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position >= 0) {
+                frequencies[position] = packedFrequencies;
+                return;
+            }
+            position = -position - 1;
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+            ordinals[position] = ordinal;
+            frequencies[position] = packedFrequencies;
+            size++;
+        }
+        
+        boolean remove(int ordinal) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.request.ProductQueryRequest;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory catalog filter and facet counter. Active products get dense int ordinals, and
+ * every category, brand, tag, price bucket, rating bucket and the in-stock flag keeps a
+ * Roaring bitmap of its ordinals. A filtered query is then an intersection of bitmaps and
+ * each facet count the cardinality of an intersection, with no MongoDB query except
+ * loading the products on the requested page.
+ * <p>
+ * Enabled with {@code catalog.facet-engine.enabled}. It follows product saves and stock
+ * changes made on this instance and is rebuilt every
+ * {@code catalog.facet-engine.rebuild-interval-ms} to pick up changes made elsewhere.
+ */
+@Component
+public class ProductFacetEngine {
+    
+    private static final Logger log = LoggerFactory.getLogger(ProductFacetEngine.class);
+    
+    /** Lower bounds of the price buckets; the last bucket is open-ended. */
+    public static final List<Integer> PRICE_BOUNDARIES = List.of(0, 25, 50, 100, 200, 500, 1000);
+    
+    /** Rating buckets by whole star, 0 to 4; a rating of 5 falls in the top bucket. */
+    public static final int RATING_BUCKETS = 5;
+    
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    private volatile Snapshot snapshot;
+    
+    public ProductFacetEngine(MongoTemplate mongoTemplate,
+                              @Value("${catalog.facet-engine.enabled:false}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+    
+    public boolean isReady() {
+        return snapshot != null;
+    }
+    
+    /**
+     * Filters and counts in memory, or returns an empty Optional while the engine is
+     * disabled or still building.
+     *
+     * @param rankedIds ids matching the text query in relevance order, or {@code null}
+     *                  when there is no text query
+     */
+    public Optional<FacetResult> query(ProductQueryRequest request, List<String> rankedIds,
+                                       int offset, int limit) {
+        Snapshot current = snapshot;
+        return current == null ? Optional.empty() : Optional.of(current.query(request, rankedIds, offset, limit));
+    }
+    
+    public void index(Product product) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.put(product);
+        }
+    }
+    
+    public void remove(String productId) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.remove(productId);
+        }
+    }
+    
+    public void adjustStock(String productId, int delta) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.adjustStock(productId, delta);
+        }
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "product-facet-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Scheduled(initialDelayString = "${catalog.facet-engine.rebuild-interval-ms:900000}",
+               fixedDelayString = "${catalog.facet-engine.rebuild-interval-ms:900000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Snapshot rebuilt = new Snapshot();
+            Query query = Query.query(Criteria.where("active").is(true));
+            query.fields().exclude("description", "images", "specs");
+            mongoTemplate.stream(query, Product.class).forEach(rebuilt::put);
+            rebuilt.optimize();
+            snapshot = rebuilt;
+            log.info("Built product facet engine with {} products in {} ms",
+                    rebuilt.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Could not build product facet engine: {}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+    
+    static int priceBucket(long priceMinor) {
+        long major = priceMinor / 100;
+        for (int i = PRICE_BOUNDARIES.size() - 1; i > 0; i--) {
+            if (major >= PRICE_BOUNDARIES.get(i)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    static int ratingBucket(double rating) {
+        return (int) Math.max(0, Math.min(RATING_BUCKETS - 1, Math.floor(rating)));
+    }
+    
+    public record FacetResult(List<String> pageIds, long total,
+                              Map<String, Long> brands,
+                              List<CategoryCount> categories,
+                              long[] priceCounts,
+                              long[] ratingCounts) {
+    }
+    
+    public record CategoryCount(String categoryId, String categoryName, long count) {
+    }
+    
+    /**
+     * The bitmaps and per-ordinal attributes. Attributes are kept so an update can clear
+     * the product's old bitmap bits and so pages can be sorted without a database read.
+     * <p>
+     * Once built by {@link #optimize()}, the ordinals are also kept presorted for every sort
+     * field, so a page is read by walking that order and keeping the matching ordinals rather
+     * than sorting the matches. Very selective filters still sort just their few matches.
+     */
+    static final class Snapshot {
+        // Sort the matches themselves when they are fewer than one in this many products
+        private static final int SPARSE_MATCH_RATIO = 32;
+        
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> ordinalsById = new HashMap<>();
+        private final List<Integer> freeOrdinals = new ArrayList<>();
+        
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final RoaringBitmap inStock = new RoaringBitmap();
+        private final Map<String, RoaringBitmap> byCategory = new HashMap<>();
+        private final Map<String, RoaringBitmap> byBrand = new HashMap<>();
+        private final Map<String, RoaringBitmap> byTag = new HashMap<>();
+        private final RoaringBitmap[] byPrice = newBitmaps(PRICE_BOUNDARIES.size());
+        private final RoaringBitmap[] byRating = newBitmaps(RATING_BUCKETS);
+        private final Map<String, String> categoryNames = new HashMap<>();
+        
+        private final List<Entry> entries = new ArrayList<>();
+        
+        // Ordinals in ascending order of each sort field, or null until optimize() builds them
+        private Ordering[] orderings;
+        
+        int size() {
+            lock.readLock().lock();
+            try {
+                return all.getCardinality();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        void optimize() {
+            lock.writeLock().lock();
+            try {
+                all.runOptimize();
+                inStock.runOptimize();
+                byCategory.values().forEach(RoaringBitmap::runOptimize);
+                byBrand.values().forEach(RoaringBitmap::runOptimize);
+                byTag.values().forEach(RoaringBitmap::runOptimize);
+                if (orderings == null) {
+                    orderings = new Ordering[SortField.values().length];
+                    for (SortField field : SortField.values()) {
+                        orderings[field.ordinal()] = new Ordering(field.ascending, all.toArray(), entries);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        void put(Product product) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(product.getId());
+                if (!product.isActive()) {
+                    return;
+                }
+                
+                int ordinal = freeOrdinals.isEmpty() ? entries.size() : freeOrdinals.remove(freeOrdinals.size() - 1);
+                Entry entry = new Entry(product);
+                if (ordinal == entries.size()) {
+                    entries.add(entry);
+                } else {
+                    entries.set(ordinal, entry);
+                }
+                ordinalsById.put(entry.id, ordinal);
+                if (orderings != null) {
+                    for (Ordering ordering : orderings) {
+                        ordering.insert(ordinal, entries);
+                    }
+                }
+                
+                all.add(ordinal);
+                if (entry.stock > 0) {
+                    inStock.add(ordinal);
+                }
+                if (entry.categoryId != null) {
+                    byCategory.computeIfAbsent(entry.categoryId, ignored -> new RoaringBitmap()).add(ordinal);
+                    if (entry.categoryName != null) {
+                        categoryNames.put(entry.categoryId, entry.categoryName);
+                    }
+                }
+                if (entry.brand != null) {
+                    byBrand.computeIfAbsent(entry.brand, ignored -> new RoaringBitmap()).add(ordinal);
+                }
+                for (String tag : entry.tags) {
+                    byTag.computeIfAbsent(tag, ignored -> new RoaringBitmap()).add(ordinal);
+                }
+                byPrice[priceBucket(entry.priceMinor)].add(ordinal);
+                byRating[ratingBucket(entry.rating)].add(ordinal);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        void remove(String productId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(productId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        void adjustStock(String productId, int delta) {
+            lock.writeLock().lock();
+            try {
+                Integer ordinal = ordinalsById.get(productId);
+                if (ordinal == null) {
+                    return;
+                }
+                Entry entry = entries.get(ordinal);
+                entry.stock += delta;
+                if (entry.stock > 0) {
+                    inStock.add(ordinal);
+                } else {
+                    inStock.remove(ordinal);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        FacetResult query(ProductQueryRequest request, List<String> rankedIds, int offset, int limit) {
+            lock.readLock().lock();
+            try {
+                RoaringBitmap matches = filter(request, rankedIds);
+                
+                Map<String, Long> brands = new HashMap<>();
+                byBrand.forEach((brand, bitmap) -> {
+                    long count = RoaringBitmap.andCardinality(matches, bitmap);
+                    if (count > 0) {
+                        brands.put(brand, count);
+                    }
+                });
+                List<CategoryCount> categories = new ArrayList<>();
+                byCategory.forEach((categoryId, bitmap) -> {
+                    long count = RoaringBitmap.andCardinality(matches, bitmap);
+                    if (count > 0) {
+                        categories.add(new CategoryCount(categoryId, categoryNames.get(categoryId), count));
+                    }
+                });
+                long[] priceCounts = new long[byPrice.length];
+                for (int i = 0; i < byPrice.length; i++) {
+                    priceCounts[i] = RoaringBitmap.andCardinality(matches, byPrice[i]);
+                }
+                long[] ratingCounts = new long[byRating.length];
+                for (int i = 0; i < byRating.length; i++) {
+                    ratingCounts[i] = RoaringBitmap.andCardinality(matches, byRating[i]);
+                }
+                
+                return new FacetResult(page(matches, request, rankedIds, offset, limit), matches.getLongCardinality(),
+                        brands, categories, priceCounts, ratingCounts);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        private RoaringBitmap filter(ProductQueryRequest request, List<String> rankedIds) {
+            RoaringBitmap matches = all.clone();
+            if (rankedIds != null) {
+                RoaringBitmap textMatches = new RoaringBitmap();
+                for (String id : rankedIds) {
+                    Integer ordinal = ordinalsById.get(id);
+                    if (ordinal != null) {
+                        textMatches.add(ordinal);
+                    }
+                }
+                matches.and(textMatches);
+            }
+            if (hasText(request.getCategoryId())) {
+                matches.and(byCategory.getOrDefault(request.getCategoryId(), new RoaringBitmap()));
+            }
+            if (request.getBrands() != null && !request.getBrands().isEmpty()) {
+                matches.and(union(byBrand, request.getBrands()));
+            }
+            if (request.getTags() != null && !request.getTags().isEmpty()) {
+                matches.and(union(byTag, request.getTags()));
+            }
+            if (Boolean.TRUE.equals(request.getInStock())) {
+                matches.and(inStock);
+            }
+            
+            // Narrow to the buckets the bounds fall in, then check the exact values of
+            // what's left
+            Long minPrice = request.getMinPrice() != null ? Money.of(request.getMinPrice()).getMinorUnits() : null;
+            Long maxPrice = request.getMaxPrice() != null ? Money.of(request.getMaxPrice()).getMinorUnits() : null;
+            if (minPrice != null || maxPrice != null) {
+                int from = minPrice != null ? priceBucket(minPrice) : 0;
+                int to = maxPrice != null ? priceBucket(maxPrice) : byPrice.length - 1;
+                matches.and(from <= to ? RoaringBitmap.or(Arrays.copyOfRange(byPrice, from, to + 1)) : new RoaringBitmap());
+            }
+            Double minRating = request.getMinRating();
+            if (minRating != null) {
+                matches.and(RoaringBitmap.or(Arrays.copyOfRange(byRating, ratingBucket(minRating), byRating.length)));
+            }
+            if (minPrice != null || maxPrice != null || minRating != null) {
+                RoaringBitmap exact = new RoaringBitmap();
+                IntIterator iterator = matches.getIntIterator();
+                while (iterator.hasNext()) {
+                    int ordinal = iterator.next();
+                    Entry entry = entries.get(ordinal);
+                    if ((minPrice == null || entry.priceMinor >= minPrice)
+                            && (maxPrice == null || entry.priceMinor <= maxPrice)
+                            && (minRating == null || entry.rating >= minRating)) {
+                        exact.add(ordinal);
+                    }
+                }
+                matches = exact;
+            }
+            return matches;
+        }
+        
+        private List<String> page(RoaringBitmap matches, ProductQueryRequest request, List<String> rankedIds,
+                                  int offset, int limit) {
+            List<String> page = new ArrayList<>(limit);
+            if (rankedIds != null && (request.getSortBy() == null || "relevance".equals(request.getSortBy()))) {
+                int skipped = 0;
+                for (String id : rankedIds) {
+                    Integer ordinal = ordinalsById.get(id);
+                    if (ordinal == null || !matches.contains(ordinal)) {
+                        continue;
+                    }
+                    if (skipped++ < offset) {
+                        continue;
+                    }
+                    page.add(id);
+                    if (page.size() == limit) {
+                        break;
+                    }
+                }
+                return page;
+            }
+            
+            SortField field = SortField.of(request.getSortBy());
+            boolean ascending = "asc".equalsIgnoreCase(request.getSortDir());
+            long matchCount = matches.getLongCardinality();
+            if (orderings == null || matchCount * SPARSE_MATCH_RATIO < all.getLongCardinality()) {
+                return sortMatches(matches, ascending ? field.ascending : field.ascending.reversed(), offset, limit);
+            }
+            
+            Ordering ordering = orderings[field.ordinal()];
+            int seen = 0;
+            for (int i = 0; i < ordering.size && page.size() < limit && seen < matchCount; i++) {
+                int ordinal = ordering.ordinals[ascending ? i : ordering.size - 1 - i];
+                if (matches.contains(ordinal) && seen++ >= offset) {
+                    page.add(entries.get(ordinal).id);
+                }
+            }
+            return page;
+        }
+        
+        private List<String> sortMatches(RoaringBitmap matches, Comparator<Entry> order, int offset, int limit) {
+            int wanted = offset + limit;
+            // Keeps the best `wanted` entries with the worst on top, so it can be evicted
+            PriorityQueue<Entry> best = new PriorityQueue<>(wanted + 1, order.reversed());
+            IntIterator iterator = matches.getIntIterator();
+            while (iterator.hasNext()) {
+                best.offer(entries.get(iterator.next()));
+                if (best.size() > wanted) {
+                    best.poll();
+                }
+            }
+            
+            Entry[] ordered = new Entry[best.size()];
+            for (int i = ordered.length - 1; i >= 0; i--) {
+                ordered[i] = best.poll();
+            }
+            List<String> page = new ArrayList<>(limit);
+            for (int i = offset; i < ordered.length; i++) {
+                page.add(ordered[i].id);
+            }
+            return page;
+        }
+        
+        private void removeLocked(String productId) {
+            Integer ordinal = ordinalsById.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            Entry entry = entries.get(ordinal);
+            if (orderings != null) {
+                for (Ordering ordering : orderings) {
+                    ordering.remove(entry, entries);
+                }
+            }
+            all.remove(ordinal);
+            inStock.remove(ordinal);
+            removeFrom(byCategory, entry.categoryId, ordinal);
+            removeFrom(byBrand, entry.brand, ordinal);
+            for (String tag : entry.tags) {
+                removeFrom(byTag, tag, ordinal);
+            }
+            byPrice[priceBucket(entry.priceMinor)].remove(ordinal);
+            byRating[ratingBucket(entry.rating)].remove(ordinal);
+            entries.set(ordinal, null);
+            freeOrdinals.add(ordinal);
+        }
+        
+        private static void removeFrom(Map<String, RoaringBitmap> bitmaps, String key, int ordinal) {
+            if (key == null) {
+                return;
+            }
+            RoaringBitmap bitmap = bitmaps.get(key);
+            if (bitmap != null) {
+                bitmap.remove(ordinal);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(key);
+                }
+            }
+        }
+        
+        private static RoaringBitmap union(Map<String, RoaringBitmap> bitmaps, List<String> keys) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (String key : keys) {
+                RoaringBitmap bitmap = bitmaps.get(key);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            return union;
+        }
+        
+        private static RoaringBitmap[] newBitmaps(int count) {
+            RoaringBitmap[] bitmaps = new RoaringBitmap[count];
+            for (int i = 0; i < count; i++) {
+                bitmaps[i] = new RoaringBitmap();
+            }
+            return bitmaps;
+        }
+        
+        private static boolean hasText(String value) {
+            return value != null && !value.isBlank();
+        }
+    }
+    
+    /**
+     * The sort fields of the MongoDB path, each ordered ascending with _id as the tiebreaker;
+     * descending is the exact reverse.
+     */
+    private enum SortField {
+        CREATED_AT(Comparator.comparingLong(entry -> entry.createdAt)),
+        PRICE(Comparator.comparingLong(entry -> entry.priceMinor)),
+        RATING(Comparator.comparingDouble(entry -> entry.rating)),
+        NAME(Comparator.comparing(entry -> entry.name, Comparator.nullsFirst(Comparator.naturalOrder())));
+        
+        private final Comparator<Entry> ascending;
+        
+        SortField(Comparator<Entry> bySortField) {
+            this.ascending = bySortField.thenComparing(entry -> entry.id);
+        }
+        
+        static SortField of(String sortBy) {
+            return switch (sortBy == null ? "createdAt" : sortBy) {
+                case "price" -> PRICE;
+                case "averageRating" -> RATING;
+                case "name" -> NAME;
+                default -> CREATED_AT;
+            };
+        }
+    }
+    
+    /**
+     * Live ordinals sorted by one field. The order is total, so an entry's position is found
+     * by binary search, and an insert or removal is one array copy.
+     */
+    private static final class Ordering {
+        private final Comparator<Entry> order;
+        private int[] ordinals;
+        private int size;
+        
+        private Ordering(Comparator<Entry> order, int[] ordinals, List<Entry> entries) {
+            this.order = order;
+            this.ordinals = Arrays.stream(ordinals).boxed()
+                    .sorted((a, b) -> order.compare(entries.get(a), entries.get(b)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            this.size = ordinals.length;
+        }
+        
+        void insert(int ordinal, List<Entry> entries) {
+            int position = -search(entries.get(ordinal), entries) - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(16, size * 2));
+            }
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            ordinals[position] = ordinal;
+            size++;
+        }
+        
+        void remove(Entry entry, List<Entry> entries) {
+            int position = search(entry, entries);
+            if (position >= 0) {
+                System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+                size--;
+            }
+        }
+        
+        // Arrays.binarySearch convention: the index if present, else -(insertion point) - 1
+        private int search(Entry entry, List<Entry> entries) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int comparison = order.compare(entries.get(ordinals[mid]), entry);
+                if (comparison < 0) {
+                    lo = mid + 1;
+                } else if (comparison > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+    }
+    
+    private static final class Entry {
+        private final String id;
+        private final String name;
+        private final String categoryId;
+        private final String categoryName;
+        private final String brand;
+        private final List<String> tags;
+        private final long priceMinor;
+        private final double rating;
+        private final long createdAt;
+        private int stock;
+        
+        private Entry(Product product) {
+            BigDecimal price = product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice();
+            this.id = product.getId();
+            this.name = product.getName();
+            this.categoryId = product.getCategoryId();
+            this.categoryName = product.getCategoryName();
+            this.brand = product.getBrand();
+            this.tags = product.getTags() != null
+                    ? product.getTags().stream().filter(Objects::nonNull).toList()
+                    : List.of();
+            this.priceMinor = price != null ? Money.of(price).getMinorUnits() : 0;
+            this.rating = product.getAverageRating();
+            this.createdAt = product.getCreatedAt() != null ? product.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+            this.stock = product.getStockQuantity();
+        }
+    }
+}
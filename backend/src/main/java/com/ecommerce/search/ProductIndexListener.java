@@ -0,0 +1,49 @@
+package com.ecommerce.search;
+
+import com.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the in-memory product indexes in step with product saves and deletes made through
+ * the repositories or MongoTemplate on this instance, and fills in the derived
+ * {@code effectivePrice} before every save.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductIndexListener extends AbstractMongoEventListener<Product> {
+    
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacetEngine facetEngine;
+    
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Product> event) {
+        Product product = event.getSource();
+        product.setEffectivePrice(product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice());
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<Product> event) {
+        searchIndex.index(event.getSource());
+        facetEngine.index(event.getSource());
+    }
+    
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Product> event) {
+        Document filter = event.getSource();
+        Object id = filter.get("_id");
+        if (id instanceof String productId) {
+            searchIndex.remove(productId);
+            facetEngine.remove(productId);
+        } else {
+            // Deleted by some other criteria; resync from the collection
+            searchIndex.rebuildInBackground();
+            facetEngine.rebuildInBackground();
+        }
+    }
+}
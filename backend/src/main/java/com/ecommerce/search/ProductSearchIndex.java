@@ -0,0 +1,164 @@
+package com.ecommerce.search;
+
+import com.ecommerce.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process full-text index over active products: name, brand, tags, category name and
+ * description, ranked with BM25F. It is built in the background at startup and kept current
+ * by {@link ProductIndexListener}; until the first build finishes, {@link #search} returns
+ * empty and callers fall back to querying MongoDB.
+ */
+@Component
+public class ProductSearchIndex {
+    
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+    
+    // name, brand, tags, categoryName, description
+    private static final float[] FIELD_BOOSTS = {3.0f, 2.0f, 2.0f, 1.5f, 1.0f};
+    
+    private final MongoTemplate mongoTemplate;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    private volatile InvertedIndex current;
+    private volatile InvertedIndex building;
+    
+    // Products changed while a rebuild is streaming; their indexed version is newer than
+    // whatever the rebuild cursor may still return for them
+    private final Set<String> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    
+    public ProductSearchIndex(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    public boolean isReady() {
+        return current != null;
+    }
+    
+    /**
+     * Returns one page of matching product ids, best match first, or an empty Optional if
+     * the index isn't built yet.
+     */
+    public Optional<SearchHits> search(String query, int offset, int limit) {
+        InvertedIndex index = current;
+        if (index == null) {
+            return Optional.empty();
+        }
+        InvertedIndex.Hits hits = index.search(TextAnalyzer.analyze(query), offset, limit);
+        return Optional.of(new SearchHits(hits.ids(), hits.total()));
+    }
+    
+    public void index(Product product) {
+        synchronized (changedDuringRebuild) {
+            InvertedIndex rebuild = building;
+            if (rebuild != null) {
+                changedDuringRebuild.add(product.getId());
+                apply(rebuild, product);
+            }
+        }
+        InvertedIndex index = current;
+        if (index != null) {
+            apply(index, product);
+        }
+    }
+    
+    public void remove(String productId) {
+        synchronized (changedDuringRebuild) {
+            InvertedIndex rebuild = building;
+            if (rebuild != null) {
+                changedDuringRebuild.add(productId);
+                rebuild.remove(productId);
+            }
+        }
+        InvertedIndex index = current;
+        if (index != null) {
+            index.remove(productId);
+        }
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuildInBackground() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "product-search-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    void rebuild() {
+        long start = System.currentTimeMillis();
+        InvertedIndex index = new InvertedIndex(FIELD_BOOSTS);
+        synchronized (changedDuringRebuild) {
+            changedDuringRebuild.clear();
+            building = index;
+        }
+        
+        try {
+            Query query = Query.query(Criteria.where("active").is(true));
+            query.fields().include("name", "brand", "tags", "categoryName", "description", "active");
+            mongoTemplate.stream(query, Product.class).forEach(product -> {
+                synchronized (changedDuringRebuild) {
+                    if (!changedDuringRebuild.contains(product.getId())) {
+                        apply(index, product);
+                    }
+                }
+            });
+            
+            synchronized (changedDuringRebuild) {
+                current = index;
+                building = null;
+                changedDuringRebuild.clear();
+            }
+            log.info("Built product search index with {} products in {} ms",
+                    index.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            synchronized (changedDuringRebuild) {
+                building = null;
+                changedDuringRebuild.clear();
+            }
+            log.warn("Could not build product search index: {}", e.getMessage());
+        }
+    }
+    
+    private static void apply(InvertedIndex index, Product product) {
+        if (!product.isActive()) {
+            index.remove(product.getId());
+            return;
+        }
+        
+        List<String> tagTerms = new ArrayList<>();
+        if (product.getTags() != null) {
+            product.getTags().forEach(tag -> tagTerms.addAll(TextAnalyzer.analyze(tag)));
+        }
+        index.put(product.getId(), List.of(
+                TextAnalyzer.analyze(product.getName()),
+                TextAnalyzer.analyze(product.getBrand()),
+                tagTerms,
+                TextAnalyzer.analyze(product.getCategoryName()),
+                TextAnalyzer.analyze(product.getDescription())));
+    }
+    
+    public record SearchHits(List<String> productIds, int total) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.ecommerce.search;
+
+import com.ecommerce.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typeahead completions over active product names, brands and category names. Products are
+ * weighted by review count, with a bonus for featured ones; brands and categories by the
+ * sum of their products' weights. The index is immutable and rebuilt periodically, so new
+ * products show up after at most {@code catalog.suggest.rebuild-interval-ms}.
+ */
+@Component
+public class ProductSuggester {
+    
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggester.class);
+    
+    private static final long FEATURED_BONUS = 25;
+    
+    private final MongoTemplate mongoTemplate;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    private volatile SuggestionIndex index = SuggestionIndex.EMPTY;
+    
+    public ProductSuggester(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    public List<Suggestion> suggest(String query, int limit) {
+        return index.complete(TextAnalyzer.normalize(query), limit);
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuildInBackground() {
+        Thread thread = new Thread(this::rebuild, "product-suggest-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Scheduled(initialDelayString = "${catalog.suggest.rebuild-interval-ms:300000}",
+               fixedDelayString = "${catalog.suggest.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            SuggestionIndex.Builder builder = new SuggestionIndex.Builder();
+            
+            Query query = Query.query(Criteria.where("active").is(true));
+            query.fields().include("name", "brand", "categoryName", "reviewCount", "featured", "active");
+            mongoTemplate.stream(query, Product.class).forEach(product -> {
+                long weight = 1 + Math.max(0, product.getReviewCount()) + (product.isFeatured() ? FEATURED_BONUS : 0);
+                builder.add(product.getName(), Suggestion.Type.PRODUCT, product.getId(), weight);
+                if (product.getBrand() != null) {
+                    builder.add(product.getBrand(), Suggestion.Type.BRAND, null, weight);
+                }
+                if (product.getCategoryName() != null) {
+                    builder.add(product.getCategoryName(), Suggestion.Type.CATEGORY, null, weight);
+                }
+            });
+            
+            SuggestionIndex rebuilt = builder.build();
+            index = rebuilt;
+            log.debug("Built suggestion index with {} suggestions under {} keys in {} ms",
+                    rebuilt.size(), rebuilt.keyCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Could not build suggestion index: {}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+    
+    public record Suggestion(String text, Type type, String productId) {
+        
+        public enum Type {
+            PRODUCT, BRAND, CATEGORY
+        }
+    }
+}
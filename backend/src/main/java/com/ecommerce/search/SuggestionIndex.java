@@ -0,0 +1,254 @@
+package com.ecommerce.search;
+
+import com.ecommerce.search.ProductSuggester.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable prefix index for typeahead. Every completion key is stored once in a single
+ * char pool, sorted, so the keys starting with a prefix form one contiguous range found by
+ * binary search. A max segment tree over the keys' weights then yields the k heaviest
+ * completions in that range in O(k log n) without visiting the rest of it.
+ * <p>
+ * A suggestion is reachable from each of its words, e.g. "Nike Running Shoe" is stored
+ * under "nike running shoe", "running shoe" and "shoe".
+ */
+final class SuggestionIndex {
+    
+    static final SuggestionIndex EMPTY = new Builder().build();
+    
+    private final char[] keyPool;
+    private final int[] keyOffsets;
+    private final int[] keyTargets;
+    private final int[] tree;
+    private final int leafCount;
+    
+    private final String[] texts;
+    private final Suggestion.Type[] types;
+    private final String[] productIds;
+    private final long[] weights;
+    
+    private SuggestionIndex(char[] keyPool, int[] keyOffsets, int[] keyTargets,
+                            String[] texts, Suggestion.Type[] types, String[] productIds, long[] weights) {
+        this.keyPool = keyPool;
+        this.keyOffsets = keyOffsets;
+        this.keyTargets = keyTargets;
+        this.texts = texts;
+        this.types = types;
+        this.productIds = productIds;
+        this.weights = weights;
+        
+        int leaves = 1;
+        while (leaves < keyTargets.length) {
+            leaves <<= 1;
+        }
+        this.leafCount = leaves;
+        this.tree = new int[leaves * 2];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < keyTargets.length; i++) {
+            tree[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            tree[node] = heavier(tree[node * 2], tree[node * 2 + 1]);
+        }
+    }
+    
+    int size() {
+        return texts.length;
+    }
+    
+    int keyCount() {
+        return keyTargets.length;
+    }
+    
+    /**
+     * Returns up to {@code limit} distinct suggestions whose key starts with the normalized
+     * prefix, heaviest first.
+     */
+    List<Suggestion> complete(String prefix, int limit) {
+        List<Suggestion> results = new ArrayList<>(limit);
+        if (prefix.isEmpty() || limit <= 0 || keyTargets.length == 0) {
+            return results;
+        }
+        
+        int from = lowerBound(prefix);
+        int to = upperBound(prefix, from);
+        if (from >= to) {
+            return results;
+        }
+        
+        // Each queued range [lo, hi) is represented by its heaviest key; taking a key splits
+        // its range around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                (a, b) -> Long.compare(keyWeight(b[2]), keyWeight(a[2])));
+        ranges.add(new int[]{from, to, maxKey(from, to)});
+        BitSet seen = new BitSet(texts.length);
+        
+        while (!ranges.isEmpty() && results.size() < limit) {
+            int[] range = ranges.poll();
+            int key = range[2];
+            int target = keyTargets[key];
+            if (!seen.get(target)) {
+                seen.set(target);
+                results.add(new Suggestion(texts[target], types[target], productIds[target]));
+            }
+            if (range[0] < key) {
+                ranges.add(new int[]{range[0], key, maxKey(range[0], key)});
+            }
+            if (key + 1 < range[1]) {
+                ranges.add(new int[]{key + 1, range[1], maxKey(key + 1, range[1])});
+            }
+        }
+        return results;
+    }
+    
+    private long keyWeight(int key) {
+        return weights[keyTargets[key]];
+    }
+    
+    private int heavier(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return keyWeight(b) > keyWeight(a) ? b : a;
+    }
+    
+    private int maxKey(int from, int to) {
+        int best = -1;
+        for (int lo = from + leafCount, hi = to + leafCount; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                best = heavier(best, tree[lo++]);
+            }
+            if ((hi & 1) == 1) {
+                best = heavier(best, tree[--hi]);
+            }
+        }
+        return best;
+    }
+    
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = keyTargets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(mid, prefix, false) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    private int upperBound(String prefix, int from) {
+        int lo = from;
+        int hi = keyTargets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(mid, prefix, true) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    // Compares the key with the prefix; with truncate, a key starting with the prefix compares equal
+    private int compareKey(int key, String prefix, boolean truncate) {
+        int start = keyOffsets[key];
+        int length = keyOffsets[key + 1] - start;
+        int common = Math.min(length, prefix.length());
+        for (int i = 0; i < common; i++) {
+            int diff = keyPool[start + i] - prefix.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        if (truncate && length >= prefix.length()) {
+            return 0;
+        }
+        return length - prefix.length();
+    }
+    
+    static final class Builder {
+        private final Map<String, Integer> targetsByKey = new HashMap<>();
+        private final List<String> texts = new ArrayList<>();
+        private final List<Suggestion.Type> types = new ArrayList<>();
+        private final List<String> productIds = new ArrayList<>();
+        private long[] weights = new long[64];
+        
+        /**
+         * Adds a suggestion, or adds the weight to an existing suggestion of the same type
+         * and normalized text.
+         */
+        Builder add(String text, Suggestion.Type type, String productId, long weight) {
+            String normalized = TextAnalyzer.normalize(text);
+            if (normalized.isEmpty()) {
+                return this;
+            }
+            String identity = type == Suggestion.Type.PRODUCT ? "p:" + productId : type.name() + ":" + normalized;
+            Integer target = targetsByKey.get(identity);
+            if (target == null) {
+                target = texts.size();
+                targetsByKey.put(identity, target);
+                texts.add(text.trim());
+                types.add(type);
+                productIds.add(productId);
+                if (target == weights.length) {
+                    weights = Arrays.copyOf(weights, target * 2);
+                }
+            }
+            weights[target] += weight;
+            return this;
+        }
+        
+        SuggestionIndex build() {
+            List<long[]> keys = new ArrayList<>();
+            List<String> keyTexts = new ArrayList<>();
+            for (int target = 0; target < texts.size(); target++) {
+                String normalized = TextAnalyzer.normalize(texts.get(target));
+                int wordStart = 0;
+                while (wordStart >= 0) {
+                    keys.add(new long[]{keyTexts.size(), target});
+                    keyTexts.add(normalized.substring(wordStart));
+                    int space = normalized.indexOf(' ', wordStart);
+                    wordStart = space < 0 ? -1 : space + 1;
+                }
+            }
+            keys.sort((a, b) -> keyTexts.get((int) a[0]).compareTo(keyTexts.get((int) b[0])));
+            
+            int totalChars = 0;
+            for (String key : keyTexts) {
+                totalChars += key.length();
+            }
+            char[] keyPool = new char[totalChars];
+            int[] keyOffsets = new int[keys.size() + 1];
+            int[] keyTargets = new int[keys.size()];
+            int position = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keyTexts.get((int) keys.get(i)[0]);
+                key.getChars(0, key.length(), keyPool, position);
+                keyOffsets[i] = position;
+                keyTargets[i] = (int) keys.get(i)[1];
+                position += key.length();
+            }
+            keyOffsets[keys.size()] = position;
+            
+            return new SuggestionIndex(keyPool, keyOffsets, keyTargets,
+                    texts.toArray(new String[0]),
+                    types.toArray(new Suggestion.Type[0]),
+                    productIds.toArray(new String[0]),
+                    Arrays.copyOf(weights, texts.size()));
+        }
+    }
+}
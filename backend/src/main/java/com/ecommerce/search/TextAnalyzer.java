@@ -0,0 +1,135 @@
+package com.ecommerce.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns product text and queries into index terms: accents are folded, text is lowercased
+ * and split on anything that isn't a letter or digit, stop words are dropped and English
+ * plurals and verb endings are stripped so "running shoes" matches "Run Shoe".
+ */
+public final class TextAnalyzer {
+    
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is",
+            "it", "of", "on", "or", "the", "to", "with", "your", "you", "this", "that");
+    
+    private static final int MAX_TERM_LENGTH = 40;
+    
+    private TextAnalyzer() {
+    }
+    
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                addTerm(terms, folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+    
+    /**
+     * Folds the text like {@link #analyze} but keeps every word unstemmed, joined by single
+     * spaces: "Café  Crème-Brûlée" becomes "cafe creme brulee".
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = fold(text);
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+    
+    private static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+    
+    private static void addTerm(List<String> terms, String token) {
+        if (token.length() > MAX_TERM_LENGTH || STOP_WORDS.contains(token)) {
+            return;
+        }
+        terms.add(stem(token));
+    }
+    
+    /**
+     * A light suffix stripper in the spirit of the first Porter steps. It only has to map
+     * inflections onto the same term consistently, not produce dictionary words.
+     */
+    static String stem(String term) {
+        if (term.length() <= 3 || !Character.isLetter(term.charAt(term.length() - 1))) {
+            return term;
+        }
+        
+        String stem = term;
+        if (stem.endsWith("ies") && stem.length() > 4) {
+            stem = stem.substring(0, stem.length() - 3) + "y";
+        } else if (stem.endsWith("sses")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("es") && endsWithSibilant(stem, 2)) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("s") && !stem.endsWith("ss") && !stem.endsWith("us") && !stem.endsWith("is")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        
+        if (stem.endsWith("ing") && stem.length() > 5 && hasVowel(stem, stem.length() - 3)) {
+            stem = undouble(stem.substring(0, stem.length() - 3));
+        } else if (stem.endsWith("ed") && stem.length() > 4 && hasVowel(stem, stem.length() - 2)) {
+            stem = undouble(stem.substring(0, stem.length() - 2));
+        }
+        return stem;
+    }
+    
+    private static boolean endsWithSibilant(String term, int suffixLength) {
+        String base = term.substring(0, term.length() - suffixLength);
+        return base.endsWith("x") || base.endsWith("ch") || base.endsWith("sh") || base.endsWith("z");
+    }
+    
+    private static boolean hasVowel(String term, int end) {
+        for (int i = 0; i < end; i++) {
+            if ("aeiouy".indexOf(term.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // "running" -> "runn" -> "run"; keeps "ll", "ss" and "zz" which are part of the word
+    private static String undouble(String stem) {
+        int n = stem.length();
+        if (n >= 2 && stem.charAt(n - 1) == stem.charAt(n - 2) && "lsz".indexOf(stem.charAt(n - 1)) < 0
+                && Character.isLetter(stem.charAt(n - 1))) {
+            return stem.substring(0, n - 1);
+        }
+        return stem;
+    }
+}
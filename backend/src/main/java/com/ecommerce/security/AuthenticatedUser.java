@@ -0,0 +1,68 @@
+package com.ecommerce.security;
+
+import com.ecommerce.model.User;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Principal built from the claims of an access token, so authenticating a request doesn't
+ * need to read the user from the database.
+ */
+@Getter
+public class AuthenticatedUser implements UserDetails {
+    
+    private final String id;
+    private final String email;
+    private final Set<User.Role> roles;
+    private final long tokenVersion;
+    
+    public AuthenticatedUser(String id, String email, Set<User.Role> roles, long tokenVersion) {
+        this.id = id;
+        this.email = email;
+        this.roles = roles;
+        this.tokenVersion = tokenVersion;
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    public String getPassword() {
+        return null;
+    }
+    
+    @Override
+    public String getUsername() {
+        return email;
+    }
+    
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
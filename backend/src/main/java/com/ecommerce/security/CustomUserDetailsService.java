@@ -1,11 +1,16 @@
 package com.ecommerce.security;
 
 import com.ecommerce.model.User;
-import com.ecommerce.repository.UserRepository;
 import com.ecommerce.service.DemoModeService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -15,9 +20,10 @@ import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     
-    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final MongoTemplate mongoTemplate;
     private final DemoModeService demoModeService;
     
     @Override
@@ -34,7 +40,7 @@ public class CustomUserDetailsService implements UserDetailsService {
             );
         }
 
-        User user = userRepository.findByEmail(email)
+        User user = userCache.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
         
         return new org.springframework.security.core.userdetails.User(
@@ -49,4 +55,25 @@ public class CustomUserDetailsService implements UserDetailsService {
                         .collect(Collectors.toList())
         );
     }
+
+    /**
+     * Stores a rehashed password after a successful login with an outdated hash cost.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        if (demoModeService.isDemoEmail(userDetails.getUsername())) {
+            return userDetails;
+        }
+        User user = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("email").is(userDetails.getUsername())),
+                new Update().set("password", newPassword),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class);
+        if (user != null) {
+            userCache.evict(user);
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
 }
@@ -1,5 +1,6 @@
 package com.ecommerce.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,6 +23,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationService tokenRevocationService;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -30,10 +33,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = getTokenFromRequest(request);
             
-            if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
-                String email = jwtTokenProvider.getEmailFromToken(token);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                
+            Claims claims = StringUtils.hasText(token)
+                    ? jwtTokenProvider.parseClaims(token).orElse(null)
+                    : null;
+            
+            UserDetails userDetails = null;
+            if (claims != null && !tokenRevocationService.isRevoked(claims.getId())) {
+                AuthenticatedUser principal = jwtTokenProvider.toAuthenticatedUser(claims);
+                if (principal == null) {
+                    // Token issued before user claims were added; look the user up instead
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                } else if (tokenVersionRegistry.isCurrent(principal.getId(), principal.getTokenVersion())) {
+                    userDetails = principal;
+                }
+            }
+            
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication = 
                         new UsernamePasswordAuthenticationToken(
                                 userDetails, 
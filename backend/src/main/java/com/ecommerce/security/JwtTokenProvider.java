@@ -1,72 +1,155 @@
 package com.ecommerce.security;
 
+import com.ecommerce.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
     
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TOKEN_VERSION = "ver";
+    
     @Value("${jwt.secret}")
     private String jwtSecret;
     
     @Value("${jwt.expiration}")
     private long jwtExpiration;
     
-    private SecretKey getSigningKey() {
+    @Value("${jwt.verified-cache-size:1024}")
+    private int verifiedCacheSize;
+    
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    // Recently verified tokens, so a client's repeated requests skip the HMAC check. Keyed by
+    // the whole token: a signature alone doesn't identify the payload it was verified with.
+    // Entries expire with their token.
+    private Cache<String, Claims> verifiedTokens;
+    
+    @PostConstruct
+    void init() {
         byte[] keyBytes;
         try {
             keyBytes = Decoders.BASE64.decode(jwtSecret);
         } catch (IllegalArgumentException e) {
             keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
         }
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-    
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateToken(userDetails.getUsername());
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, verifiedCacheSize))
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        return expiration == null ? Long.MAX_VALUE
+                                : TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
     
-    public String generateToken(String email) {
+    public String generateToken(User user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
         
         return Jwts.builder()
-                .subject(email)
+                .id(UUID.randomUUID().toString())
+                .subject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLES, user.getRoles().stream().map(Enum::name).sorted().collect(Collectors.toList()))
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
-    public String getEmailFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-        
-        return claims.getSubject();
+    public long getExpirationMs() {
+        return jwtExpiration;
     }
     
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the token and returns its claims in one parse, or an empty Optional if the
+     * token is malformed, tampered with or expired.
+     */
+    public Optional<Claims> parseClaims(String token) {
+        Claims cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            // Expiry is checked again since the cache's clock may lag the token's by a tick
+            return isExpired(cached) ? Optional.empty() : Optional.of(cached);
+        }
+        
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            verifiedTokens.put(token, claims);
+            return Optional.of(claims);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return Optional.empty();
         }
     }
+    
+    /**
+     * Builds the request principal from a verified token's claims, or returns {@code null}
+     * for tokens issued before the user claims were added.
+     */
+    public AuthenticatedUser toAuthenticatedUser(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        if (userId == null) {
+            return null;
+        }
+        
+        Set<User.Role> roles = EnumSet.noneOf(User.Role.class);
+        Object roleClaim = claims.get(CLAIM_ROLES);
+        if (roleClaim instanceof Collection<?> roleNames) {
+            for (Object roleName : roleNames) {
+                try {
+                    roles.add(User.Role.valueOf(String.valueOf(roleName)));
+                } catch (IllegalArgumentException ignored) {
+                    // Role no longer exists; grant nothing for it
+                }
+            }
+        }
+        
+        Number version = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+        return new AuthenticatedUser(userId, claims.getSubject(), roles, version != null ? version.longValue() : 0L);
+    }
+    
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
 }
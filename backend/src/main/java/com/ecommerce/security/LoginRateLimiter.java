@@ -0,0 +1,97 @@
+package com.ecommerce.security;
+
+import com.ecommerce.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sliding-window limit on credential attempts per client IP and per account email, checked
+ * before any password is hashed. Each key keeps the timestamps of its attempts inside the
+ * window, so a client can't double its budget by straddling a fixed window boundary.
+ */
+@Component
+public class LoginRateLimiter {
+    
+    private final Map<String, ArrayDeque<Long>> attempts = new ConcurrentHashMap<>();
+    private final int maxPerIp;
+    private final int maxPerEmail;
+    private final long windowMs;
+    
+    public LoginRateLimiter(@Value("${security.login-rate-limit.per-ip:30}") int maxPerIp,
+                            @Value("${security.login-rate-limit.per-email:10}") int maxPerEmail,
+                            @Value("${security.login-rate-limit.window-seconds:300}") long windowSeconds) {
+        this.maxPerIp = maxPerIp;
+        this.maxPerEmail = maxPerEmail;
+        this.windowMs = windowSeconds * 1000;
+    }
+    
+    /**
+     * Records an attempt from the IP against the email, or throws if either has used up
+     * its budget for the window. Rejected attempts don't count against the budget.
+     */
+    public void acquire(String ip, String email) {
+        long now = System.currentTimeMillis();
+        String ipKey = "ip:" + ip;
+        String emailKey = email != null ? "email:" + email.toLowerCase(Locale.ROOT) : null;
+        
+        long ipWait = tryRecord(ipKey, maxPerIp, now);
+        if (ipWait > 0) {
+            throw limited(ipWait);
+        }
+        if (emailKey != null) {
+            long emailWait = tryRecord(emailKey, maxPerEmail, now);
+            if (emailWait > 0) {
+                forget(ipKey, now);
+                throw limited(emailWait);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${security.login-rate-limit.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        attempts.entrySet().removeIf(entry -> {
+            ArrayDeque<Long> window = entry.getValue();
+            synchronized (window) {
+                Long newest = window.peekLast();
+                return newest == null || newest <= cutoff;
+            }
+        });
+    }
+    
+    // Returns 0 if the attempt was recorded, otherwise the milliseconds until one would be
+    private long tryRecord(String key, int limit, long now) {
+        ArrayDeque<Long> window = attempts.computeIfAbsent(key, ignored -> new ArrayDeque<>());
+        synchronized (window) {
+            long cutoff = now - windowMs;
+            while (!window.isEmpty() && window.peekFirst() <= cutoff) {
+                window.pollFirst();
+            }
+            if (window.size() >= limit) {
+                return window.peekFirst() - cutoff;
+            }
+            window.addLast(now);
+            return 0;
+        }
+    }
+    
+    private void forget(String key, long timestamp) {
+        ArrayDeque<Long> window = attempts.get(key);
+        if (window != null) {
+            synchronized (window) {
+                window.removeLastOccurrence(timestamp);
+            }
+        }
+    }
+    
+    private static TooManyRequestsException limited(long waitMs) {
+        return new TooManyRequestsException("Too many attempts, please try again later",
+                Math.max(1, (waitMs + 999) / 1000));
+    }
+}
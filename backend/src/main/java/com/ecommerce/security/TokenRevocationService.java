@@ -0,0 +1,104 @@
+package com.ecommerce.security;
+
+import com.ecommerce.model.RevokedToken;
+import com.ecommerce.service.CacheInvalidationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Access-token revocation list. Revoked jtis are stored in revoked_tokens and mirrored in an
+ * in-memory Bloom filter, so checking a token that was never revoked (nearly all of them)
+ * costs no database round trip; only filter hits are confirmed against the collection.
+ * <p>
+ * The filter is rebuilt from the collection at startup and every
+ * {@code security.revocation.rebuild-interval-ms}, which also drops expired entries.
+ * Revocations on other instances arrive through {@link CacheInvalidationService}.
+ */
+@Service
+public class TokenRevocationService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+    
+    static final String CACHE_NAME = "revoked_tokens";
+    
+    private final MongoTemplate mongoTemplate;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final long expectedEntries;
+    private final double falsePositiveRate;
+    
+    private volatile BloomFilter revoked;
+    
+    public TokenRevocationService(MongoTemplate mongoTemplate,
+                                  CacheInvalidationService cacheInvalidationService,
+                                  @Value("${security.revocation.expected-entries:100000}") long expectedEntries,
+                                  @Value("${security.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.revoked = BloomFilter.create(expectedEntries, falsePositiveRate);
+        
+        cacheInvalidationService.subscribe(CACHE_NAME, message -> {
+            String jti = message.getString("key");
+            if (jti != null) {
+                revoked.put(jti);
+            }
+        });
+    }
+    
+    public boolean isRevoked(String jti) {
+        if (jti == null || !revoked.mightContain(jti)) {
+            return false;
+        }
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(jti)), RevokedToken.class);
+    }
+    
+    public void revoke(String jti, LocalDateTime expiresAt) {
+        mongoTemplate.save(RevokedToken.builder()
+                .id(jti)
+                .revokedAt(LocalDateTime.now())
+                .expiresAt(expiresAt)
+                .build());
+        revoked.put(jti);
+        cacheInvalidationService.publish(CACHE_NAME, jti, Map.of());
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(initialDelayString = "${security.revocation.rebuild-interval-ms:600000}",
+               fixedDelayString = "${security.revocation.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            BloomFilter rebuilt = BloomFilter.create(expectedEntries, falsePositiveRate);
+            long count = addRevoked(rebuilt, Query.query(Criteria.where("expiresAt").gt(startedAt)));
+            revoked = rebuilt;
+            
+            // Revocations made while the filter was being rebuilt went into the old one
+            addRevoked(rebuilt, Query.query(Criteria.where("revokedAt").gte(startedAt.minusSeconds(1))));
+            log.debug("Rebuilt revoked token filter with {} entries", count);
+        } catch (RuntimeException e) {
+            log.warn("Could not rebuild revoked token filter: {}", e.getMessage());
+        }
+    }
+    
+    private long addRevoked(BloomFilter filter, Query query) {
+        query.fields().include("_id");
+        long[] count = {0};
+        mongoTemplate.stream(query, RevokedToken.class).forEach(token -> {
+            filter.put(token.getId());
+            count[0]++;
+        });
+        return count[0];
+    }
+}
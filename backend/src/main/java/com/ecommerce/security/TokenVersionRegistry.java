@@ -0,0 +1,57 @@
+package com.ecommerce.security;
+
+import com.ecommerce.model.User;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of each user's current token version. Access tokens carry the version they
+ * were issued with; bumping a user's version (deactivation, role change) makes every token
+ * issued before it fail authentication. Only users whose version was ever bumped are held.
+ * <p>
+ * Changes made on this instance apply immediately; changes made on other instances are
+ * picked up by the periodic reload ({@code security.token-version-refresh-ms}).
+ */
+@Component
+@RequiredArgsConstructor
+public class TokenVersionRegistry {
+    
+    private static final Logger log = LoggerFactory.getLogger(TokenVersionRegistry.class);
+    
+    private final MongoTemplate mongoTemplate;
+    
+    private final Map<String, Long> versionsByUserId = new ConcurrentHashMap<>();
+    
+    public boolean isCurrent(String userId, long tokenVersion) {
+        return tokenVersion >= versionsByUserId.getOrDefault(userId, 0L);
+    }
+    
+    public void update(String userId, long tokenVersion) {
+        versionsByUserId.merge(userId, tokenVersion, Math::max);
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(initialDelayString = "${security.token-version-refresh-ms:60000}",
+               fixedDelayString = "${security.token-version-refresh-ms:60000}")
+    public void reload() {
+        Query query = Query.query(Criteria.where("tokenVersion").gt(0));
+        query.fields().include("tokenVersion");
+        try {
+            mongoTemplate.find(query, User.class)
+                    .forEach(user -> update(user.getId(), user.getTokenVersion()));
+        } catch (RuntimeException e) {
+            log.warn("Could not load token versions: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ecommerce.security;
+
+import com.ecommerce.model.User;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.service.CacheInvalidationService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, expiring cache of users keyed by email, shared by authentication and
+ * {@code UserService.getCurrentUser()}. Entries are evicted when a user is changed, on this
+ * instance directly and on the others through {@link CacheInvalidationService}. Hit rate,
+ * evictions and load latency are exported as the {@code cache.*} metrics tagged
+ * {@code cache=users}.
+ */
+@Component
+public class UserCache {
+    
+    static final String CACHE_NAME = "users";
+    
+    private final LoadingCache<String, User> users;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    
+    public UserCache(UserRepository userRepository,
+                     CacheInvalidationService cacheInvalidationService,
+                     TokenVersionRegistry tokenVersionRegistry,
+                     MeterRegistry meterRegistry,
+                     @Value("${users.cache.max-size:10000}") long maxSize,
+                     @Value("${users.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(email -> userRepository.findByEmail(email).orElse(null));
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+        cacheInvalidationService.subscribe(CACHE_NAME, this::onRemoteInvalidation);
+    }
+    
+    /**
+     * Returns a copy of the cached user, so callers are free to modify what they get back.
+     */
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(users.get(email)).map(UserCache::copy);
+    }
+    
+    /**
+     * Drops the user from this instance's cache and tells the other instances to do the same,
+     * passing along the user's current token version.
+     */
+    public void evict(User user) {
+        users.invalidate(user.getEmail());
+        cacheInvalidationService.publish(CACHE_NAME, user.getEmail(), Map.of(
+                "userId", user.getId(),
+                "tokenVersion", user.getTokenVersion()));
+    }
+    
+    private void onRemoteInvalidation(Document message) {
+        String email = message.getString("key");
+        if (email != null) {
+            users.invalidate(email);
+        }
+        String userId = message.getString("userId");
+        Object tokenVersion = message.get("tokenVersion");
+        if (userId != null && tokenVersion instanceof Number version) {
+            tokenVersionRegistry.update(userId, version.longValue());
+        }
+    }
+    
+    private static User copy(User user) {
+        return user.toBuilder()
+                .roles(user.getRoles() != null ? new HashSet<>(user.getRoles()) : new HashSet<>())
+                .address(user.getAddress() != null ? user.getAddress().toBuilder().build() : null)
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.request.LoginRequest;
+import com.ecommerce.dto.request.RefreshTokenRequest;
 import com.ecommerce.dto.request.RegisterRequest;
 import com.ecommerce.dto.response.AuthResponse;
 import com.ecommerce.dto.response.UserResponse;
@@ -8,14 +9,17 @@ import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.model.User;
 import com.ecommerce.repository.UserRepository;
 import com.ecommerce.security.JwtTokenProvider;
+import com.ecommerce.security.LoginRateLimiter;
+import com.ecommerce.security.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Set;
 import java.util.UUID;
 
@@ -26,13 +30,18 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
     private final AuthenticationManager authenticationManager;
+    private final LoginRateLimiter loginRateLimiter;
     private final DemoDataService demoDataService;
     private final DemoModeService demoModeService;
+    private final DashboardService dashboardService;
 
     private static final String DEMO_EMAIL_DOMAIN = "@ecommerce.local";
     
-    public AuthResponse register(RegisterRequest request) {
+    public AuthResponse register(RegisterRequest request, String clientIp) {
+        loginRateLimiter.acquire(clientIp, request.getEmail());
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new BadRequestException("Email already registered");
         }
@@ -48,21 +57,21 @@ public class AuthService {
                 .build();
         
         user = userRepository.save(user);
+        dashboardService.recordUserRegistered();
         
-        String token = jwtTokenProvider.generateToken(user.getEmail());
-        return AuthResponse.of(token, UserResponse.fromUser(user));
+        return issueTokens(user);
     }
     
-    public AuthResponse login(LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
+    public AuthResponse login(LoginRequest request, String clientIp) {
+        loginRateLimiter.acquire(clientIp, request.getEmail());
+        authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
         );
         
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new BadRequestException("User not found"));
         
-        String token = jwtTokenProvider.generateToken(authentication);
-        return AuthResponse.of(token, UserResponse.fromUser(user));
+        return issueTokens(user);
     }
 
     public AuthResponse demoLogin() {
@@ -74,7 +83,35 @@ public class AuthService {
         user.setRoles(Set.of(User.Role.USER));
         user.setActive(true);
 
-        String token = jwtTokenProvider.generateToken(demoEmail);
-        return AuthResponse.of(token, UserResponse.fromUser(user));
+        return issueTokens(user);
+    }
+
+    public AuthResponse refresh(RefreshTokenRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+        User user = rotation.user();
+        return AuthResponse.of(jwtTokenProvider.generateToken(user), rotation.refreshToken(), UserResponse.fromUser(user));
+    }
+    
+    /**
+     * Ends the session: the refresh token family is revoked, and so is the access token
+     * until it would have expired.
+     */
+    public void logout(String refreshToken, String accessToken) {
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenService.revoke(refreshToken);
+        }
+        if (accessToken != null) {
+            Claims claims = jwtTokenProvider.parseClaims(accessToken).orElse(null);
+            if (claims != null && claims.getId() != null && claims.getExpiration() != null) {
+                tokenRevocationService.revoke(claims.getId(),
+                        LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault()));
+            }
+        }
+    }
+    
+    private AuthResponse issueTokens(User user) {
+        String token = jwtTokenProvider.generateToken(user);
+        String refreshToken = refreshTokenService.issue(user);
+        return AuthResponse.of(token, refreshToken, UserResponse.fromUser(user));
     }
 }
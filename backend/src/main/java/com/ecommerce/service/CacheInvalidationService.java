@@ -0,0 +1,183 @@
+package com.ecommerce.service;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CreateCollectionOptions;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts cache invalidations to every application instance through the capped
+ * cache_invalidations collection. Each instance follows the collection with a tailable
+ * cursor on a background thread and hands messages from other instances to the listeners
+ * registered for that cache name.
+ */
+@Service
+public class CacheInvalidationService {
+    
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationService.class);
+    
+    static final String COLLECTION = "cache_invalidations";
+    
+    private static final long CAPPED_SIZE_BYTES = 1024 * 1024;
+    private static final long CAPPED_MAX_DOCUMENTS = 10_000;
+    private static final long RETRY_DELAY_MS = 5_000;
+    
+    private final MongoTemplate mongoTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<Document>>> listeners = new ConcurrentHashMap<>();
+    
+    private volatile boolean running;
+    private volatile MongoCursor<Document> cursor;
+    private Thread listenerThread;
+    
+    public CacheInvalidationService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    public void subscribe(String cacheName, Consumer<Document> listener) {
+        listeners.computeIfAbsent(cacheName, ignored -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+    
+    /**
+     * Publishes an invalidation of {@code key} in {@code cacheName}; {@code attributes} are
+     * passed along to the listeners on the other instances.
+     */
+    public void publish(String cacheName, String key, Map<String, Object> attributes) {
+        Document message = new Document(attributes)
+                .append("cache", cacheName)
+                .append("key", key)
+                .append("origin", instanceId)
+                .append("createdAt", new Date());
+        try {
+            collection().insertOne(message);
+        } catch (RuntimeException e) {
+            log.warn("Could not publish invalidation of {} in {}: {}", key, cacheName, e.getMessage());
+        }
+    }
+    
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            // Create it before anything is published, or the first insert makes it uncapped
+            ensureCollection();
+        } catch (RuntimeException e) {
+            log.warn("Could not create {}: {}", COLLECTION, e.getMessage());
+        }
+        listenerThread = new Thread(this::listen, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+    
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        MongoCursor<Document> current = cursor;
+        if (current != null) {
+            current.close();
+        }
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+    
+    private void listen() {
+        // Only messages published after startup matter; anything older predates our caches
+        ObjectId lastSeen = new ObjectId();
+        
+        while (running) {
+            try {
+                ensureCollection();
+                // A tailable cursor on an empty capped collection is closed immediately
+                collection().insertOne(new Document("cache", "").append("origin", instanceId));
+                
+                try (MongoCursor<Document> tail = collection()
+                        .find(new Document("_id", new Document("$gt", lastSeen)))
+                        .cursorType(CursorType.TailableAwait)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .iterator()) {
+                    cursor = tail;
+                    while (running) {
+                        Document message = tail.tryNext();
+                        if (message == null) {
+                            continue;
+                        }
+                        lastSeen = message.getObjectId("_id");
+                        dispatch(message);
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Cache invalidation listener failed, retrying in {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+                sleep();
+            }
+        }
+    }
+    
+    private void dispatch(Document message) {
+        if (instanceId.equals(message.getString("origin"))) {
+            return;
+        }
+        List<Consumer<Document>> cacheListeners = listeners.get(message.getString("cache"));
+        if (cacheListeners == null) {
+            return;
+        }
+        for (Consumer<Document> listener : cacheListeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("Cache invalidation listener for {} failed: {}", message.getString("cache"), e.getMessage());
+            }
+        }
+    }
+    
+    private void ensureCollection() {
+        if (!mongoTemplate.collectionExists(COLLECTION)) {
+            try {
+                mongoTemplate.getDb().createCollection(COLLECTION, new CreateCollectionOptions()
+                        .capped(true)
+                        .sizeInBytes(CAPPED_SIZE_BYTES)
+                        .maxDocuments(CAPPED_MAX_DOCUMENTS));
+            } catch (RuntimeException e) {
+                // Another instance created it first
+                log.debug("Could not create {}: {}", COLLECTION, e.getMessage());
+            }
+        }
+    }
+    
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -5,39 +5,64 @@ import com.ecommerce.dto.response.CartResponse;
 import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.Cart;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Product;
 import com.ecommerce.model.User;
 import com.ecommerce.repository.CartRepository;
 import com.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
+/**
+ * Cart operations. Persistent carts are changed with single atomic updates on the cart
+ * document (returned by the same findAndModify), so concurrent requests from the same
+ * shopper can't overwrite each other's changes. Demo carts, and all carts when the
+ * {@link CartWriteBehindStore} is enabled, live in memory and are edited in place.
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
     
+    private static final int MAX_ADD_ATTEMPTS = 3;
+    
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final UserService userService;
     private final DemoModeService demoModeService;
+    private final InventoryHoldService inventoryHoldService;
+    private final MongoTemplate mongoTemplate;
+    private final CartWriteBehindStore cartStore;
     
     public CartResponse getCart() {
         User user = userService.getCurrentUser();
-        Cart cart = isDemoUser(user)
-                ? demoModeService.getOrCreateCartByUser(user)
-                : getOrCreateCart(user.getId());
-        return CartResponse.fromCart(cart);
+        if (isDemoUser(user)) {
+            return CartResponse.fromCart(demoModeService.getOrCreateCartByUser(user));
+        }
+        if (cartStore.isEnabled()) {
+            return cartStore.read(user.getId(), this::getOrCreateCart, CartResponse::fromCart);
+        }
+        return CartResponse.fromCart(getOrCreateCart(user.getId()));
     }
     
     public CartResponse addToCart(CartItemRequest request) {
         User user = userService.getCurrentUser();
-        Cart cart = isDemoUser(user)
-                ? demoModeService.getOrCreateCartByUser(user)
-                : getOrCreateCart(user.getId());
         
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
@@ -46,95 +71,99 @@ public class CartService {
             throw new BadRequestException("Product is not available");
         }
         
-        if (product.getStockQuantity() < request.getQuantity()) {
-            throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        if (isDemoUser(user)) {
+            Cart cart = demoModeService.getOrCreateCartByUser(user);
+            addItem(cart, product, request.getQuantity(), newQuantity -> checkDemoStock(product, newQuantity));
+            return CartResponse.fromCart(demoModeService.saveCart(user, cart));
+        }
+        if (cartStore.isEnabled()) {
+            return cartStore.update(user.getId(), this::getOrCreateCart, cart -> {
+                addItem(cart, product, request.getQuantity(),
+                        newQuantity -> inventoryHoldService.placeHold(product, user.getId(), newQuantity));
+                return CartResponse.fromCart(cart);
+            });
         }
         
-        // Check if product already in cart
-        Optional<Cart.CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(request.getProductId()))
-                .findFirst();
+        int quantity = request.getQuantity();
+        Cart cart = addQuantity(user.getId(), product, quantity);
+        int newQuantity = findItem(cart, product.getId())
+                .map(Cart.CartItem::getQuantity)
+                .orElse(quantity);
         
-        if (existingItem.isPresent()) {
-            Cart.CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + request.getQuantity();
-            
-            if (product.getStockQuantity() < newQuantity) {
-                throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        // The line is updated first and the hold checked afterwards, so the check sees the
+        // quantity actually in the cart even when another tab added to it concurrently
+        try {
+            inventoryHoldService.placeHold(product, user.getId(), newQuantity);
+        } catch (BadRequestException e) {
+            if (newQuantity == quantity) {
+                removeLine(user.getId(), product.getId());
+            } else {
+                takeBackQuantity(user.getId(), product.getId(), effectivePrice(product), quantity);
             }
-            
-            item.setQuantity(newQuantity);
-            BigDecimal price = product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice();
-            item.setSubtotal(price.multiply(BigDecimal.valueOf(newQuantity)));
-        } else {
-            BigDecimal price = product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice();
-            String productImage = product.getImages() != null && !product.getImages().isEmpty() 
-                    ? product.getImages().get(0) : null;
-            
-            Cart.CartItem newItem = Cart.CartItem.builder()
-                    .productId(product.getId())
-                    .productName(product.getName())
-                    .productImage(productImage)
-                    .price(price)
-                    .quantity(request.getQuantity())
-                    .subtotal(price.multiply(BigDecimal.valueOf(request.getQuantity())))
-                    .build();
-            
-            cart.getItems().add(newItem);
+            throw e;
         }
-        
-        cart.recalculateTotals();
-        cart = isDemoUser(user)
-                ? demoModeService.saveCart(user, cart)
-                : cartRepository.save(cart);
         return CartResponse.fromCart(cart);
     }
     
     public CartResponse updateCartItem(String productId, int quantity) {
         User user = userService.getCurrentUser();
-        Cart cart = isDemoUser(user)
-                ? demoModeService.getOrCreateCartByUser(user)
-                : cartRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Cart", "userId", user.getId()));
-        
-        Cart.CartItem item = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
+        if (isDemoUser(user)) {
+            Cart cart = demoModeService.getOrCreateCartByUser(user);
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+            setItemQuantity(cart, productId, quantity, newQuantity -> checkDemoStock(product, newQuantity));
+            return CartResponse.fromCart(demoModeService.saveCart(user, cart));
+        }
+        
+        if (quantity <= 0) {
+            return removeFromCart(productId);
+        }
         
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
         
-        if (quantity <= 0) {
-            cart.getItems().remove(item);
-        } else {
-            if (product.getStockQuantity() < quantity) {
-                throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
-            }
-            item.setQuantity(quantity);
-            item.setSubtotal(item.getPrice().multiply(BigDecimal.valueOf(quantity)));
+        if (cartStore.isEnabled()) {
+            return cartStore.update(user.getId(), this::getOrCreateCart, cart -> {
+                setItemQuantity(cart, productId, quantity,
+                        newQuantity -> inventoryHoldService.placeHold(product, user.getId(), newQuantity));
+                return CartResponse.fromCart(cart);
+            });
         }
         
-        cart.recalculateTotals();
-        cart = isDemoUser(user)
-                ? demoModeService.saveCart(user, cart)
-                : cartRepository.save(cart);
+        inventoryHoldService.placeHold(product, user.getId(), quantity);
+        Cart cart = setLineQuantity(user.getId(), productId, quantity);
+        if (cart == null) {
+            inventoryHoldService.releaseHold(productId, user.getId());
+            throw new ResourceNotFoundException("Item not found in cart");
+        }
         return CartResponse.fromCart(cart);
     }
     
     public CartResponse removeFromCart(String productId) {
         User user = userService.getCurrentUser();
-        Cart cart = isDemoUser(user)
-                ? demoModeService.getOrCreateCartByUser(user)
-                : cartRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Cart", "userId", user.getId()));
+        if (isDemoUser(user)) {
+            Cart cart = demoModeService.getOrCreateCartByUser(user);
+            cart.getItems().removeIf(item -> item.getProductId().equals(productId));
+            cart.recalculateTotals();
+            return CartResponse.fromCart(demoModeService.saveCart(user, cart));
+        }
         
-        cart.getItems().removeIf(item -> item.getProductId().equals(productId));
-        cart.recalculateTotals();
-        cart = isDemoUser(user)
-                ? demoModeService.saveCart(user, cart)
-                : cartRepository.save(cart);
-        return CartResponse.fromCart(cart);
+        CartResponse response;
+        if (cartStore.isEnabled()) {
+            response = cartStore.update(user.getId(), this::getOrCreateCart, cart -> {
+                cart.getItems().removeIf(item -> item.getProductId().equals(productId));
+                cart.recalculateTotals();
+                return CartResponse.fromCart(cart);
+            });
+        } else {
+            Cart cart = removeLine(user.getId(), productId);
+            if (cart == null) {
+                throw new ResourceNotFoundException("Cart", "userId", user.getId());
+            }
+            response = CartResponse.fromCart(cart);
+        }
+        inventoryHoldService.releaseHold(productId, user.getId());
+        return response;
     }
     
     public void clearCart() {
@@ -144,12 +173,27 @@ public class CartService {
             return;
         }
 
-        Cart cart = cartRepository.findByUserId(user.getId()).orElse(null);
-        if (cart != null) {
-            cart.getItems().clear();
-            cart.recalculateTotals();
-            cartRepository.save(cart);
+        if (cartStore.isEnabled()) {
+            cartStore.update(user.getId(), this::getOrCreateCart, cart -> {
+                cart.getItems().clear();
+                cart.recalculateTotals();
+                return cart;
+            });
+            // The order is already placed; a failed write is retried by the next flush
+            cartStore.tryFlush(user.getId());
+            inventoryHoldService.releaseAll(user.getId());
+            return;
         }
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("userId").is(user.getId())),
+                new Update()
+                        .set("items", new ArrayList<>())
+                        .set("totalItems", 0)
+                        .set("totalPrice", decimal(Money.ZERO))
+                        .set("updatedAt", LocalDateTime.now()),
+                Cart.class);
+        inventoryHoldService.releaseAll(user.getId());
     }
     
     public Cart getCartEntity() {
@@ -162,21 +206,263 @@ public class CartService {
             return cart;
         }
 
+        // Checkout must see every change, including ones not yet written behind
+        cartStore.flush(user.getId());
         return cartRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new BadRequestException("Cart is empty"));
     }
     
     private Cart getOrCreateCart(String userId) {
-        return cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = Cart.builder()
-                            .userId(userId)
-                            .items(new ArrayList<>())
-                            .totalPrice(BigDecimal.ZERO)
-                            .totalItems(0)
-                            .build();
-                    return cartRepository.save(newCart);
-                });
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("userId").is(userId)),
+                new Update()
+                        .setOnInsert("items", new ArrayList<>())
+                        .setOnInsert("totalItems", 0)
+                        .setOnInsert("totalPrice", decimal(Money.ZERO))
+                        .setOnInsert("createdAt", now)
+                        .setOnInsert("updatedAt", now),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Cart.class);
+    }
+    
+    // ========== Atomic cart updates ==========
+    
+    /**
+     * Adds {@code quantity} units of the product to the cart, creating the line, or the cart
+     * itself, if needed.
+     */
+    private Cart addQuantity(String userId, Product product, int quantity) {
+        Money price = effectivePrice(product);
+        
+        for (int attempt = 1; ; attempt++) {
+            Cart cart = incrementLine(userId, product.getId(), price, quantity);
+            if (cart == null) {
+                cart = repriceLine(userId, product.getId(), price, quantity);
+            }
+            if (cart != null) {
+                return cart;
+            }
+            try {
+                return pushLine(userId, product, price, quantity);
+            } catch (DuplicateKeyException e) {
+                // Another request created the cart with this line in the meantime; add to it
+                if (attempt >= MAX_ADD_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Positional $inc on an existing line whose unit price still matches the product's
+     * price, with the cart totals adjusted in the same update.
+     */
+    private Cart incrementLine(String userId, String productId, Money price, int quantity) {
+        Decimal128 amount = decimal(price.times(quantity));
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                .and("items").elemMatch(Criteria.where("productId").is(productId)
+                        .and("price").is(decimal(price))));
+        Update update = new Update()
+                .inc("items.$.quantity", quantity)
+                .inc("items.$.subtotal", amount)
+                .inc("totalItems", quantity)
+                .inc("totalPrice", amount)
+                .set("updatedAt", LocalDateTime.now());
+        return findAndModify(query, update);
+    }
+    
+    /**
+     * Undoes an add that couldn't be held: a conditional $inc taking {@code quantity} units
+     * back off the line, only if the line still has them at the price they were added at.
+     * Never creates a line. If another request changed the line in the meantime, it is left
+     * as that request set it.
+     */
+    private Cart takeBackQuantity(String userId, String productId, Money price, int quantity) {
+        Decimal128 amount = decimal(price.times(-quantity));
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                .and("items").elemMatch(Criteria.where("productId").is(productId)
+                        .and("price").is(decimal(price))
+                        .and("quantity").gte(quantity)));
+        Update update = new Update()
+                .inc("items.$.quantity", -quantity)
+                .inc("items.$.subtotal", amount)
+                .inc("totalItems", -quantity)
+                .inc("totalPrice", amount)
+                .set("updatedAt", LocalDateTime.now());
+        return findAndModify(query, update);
+    }
+    
+    /**
+     * Adds to an existing line whose unit price has changed since it was added, moving the
+     * whole line to the current price and recomputing the totals.
+     */
+    private Cart repriceLine(String userId, String productId, Money price, int quantity) {
+        Decimal128 unitPrice = decimal(price);
+        Document newQuantity = new Document("$add", List.of("$$this.quantity", quantity));
+        return updateLine(userId, productId, new Document()
+                .append("price", unitPrice)
+                .append("quantity", newQuantity)
+                .append("subtotal", new Document("$multiply", List.of(unitPrice, newQuantity))));
+    }
+    
+    /**
+     * Appends a new line, upserting the cart on a shopper's first add. The filter only
+     * matches carts without this product, so a concurrent add of the same product surfaces
+     * as a duplicate key on userId instead of a second line.
+     */
+    private Cart pushLine(String userId, Product product, Money price, int quantity) {
+        Money subtotal = price.times(quantity);
+        String productImage = product.getImages() != null && !product.getImages().isEmpty() 
+                ? product.getImages().get(0) : null;
+        
+        Cart.CartItem newItem = Cart.CartItem.builder()
+                .productId(product.getId())
+                .productName(product.getName())
+                .productImage(productImage)
+                .price(price)
+                .quantity(quantity)
+                .subtotal(subtotal)
+                .build();
+        
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                .and("items.productId").ne(product.getId()));
+        Update update = new Update()
+                .push("items", newItem)
+                .inc("totalItems", quantity)
+                .inc("totalPrice", decimal(subtotal))
+                .set("updatedAt", now)
+                .setOnInsert("createdAt", now);
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Cart.class);
+    }
+    
+    private Cart setLineQuantity(String userId, String productId, int quantity) {
+        return updateLine(userId, productId, new Document()
+                .append("quantity", quantity)
+                .append("subtotal", new Document("$multiply",
+                        List.of(new Document("$toDecimal", "$$this.price"), quantity))));
+    }
+    
+    private Cart removeLine(String userId, String productId) {
+        AggregationOperation removeItem = context -> new Document("$set", new Document("items",
+                new Document("$filter", new Document()
+                        .append("input", "$items")
+                        .append("cond", new Document("$ne",
+                                List.of("$$this.productId", new Document("$literal", productId)))))));
+        
+        return findAndModify(Query.query(Criteria.where("userId").is(userId)),
+                AggregationUpdate.from(List.of(removeItem, recalculateTotals())));
+    }
+    
+    /**
+     * Pipeline update merging {@code changes} into the cart line for the product and then
+     * recomputing the totals from the lines, all in one atomic write. Returns {@code null}
+     * if the cart has no such line.
+     */
+    private Cart updateLine(String userId, String productId, Document changes) {
+        AggregationOperation updateItem = context -> new Document("$set", new Document("items",
+                new Document("$map", new Document()
+                        .append("input", "$items")
+                        .append("in", new Document("$cond", List.of(
+                                new Document("$eq", List.of("$$this.productId", new Document("$literal", productId))),
+                                new Document("$mergeObjects", List.of("$$this", changes)),
+                                "$$this"))))));
+        
+        Query query = Query.query(Criteria.where("userId").is(userId).and("items.productId").is(productId));
+        return findAndModify(query, AggregationUpdate.from(List.of(updateItem, recalculateTotals())));
+    }
+    
+    // Server-side equivalent of Cart.recalculateTotals()
+    private static AggregationOperation recalculateTotals() {
+        return context -> new Document("$set", new Document()
+                .append("totalItems", new Document("$sum", "$items.quantity"))
+                .append("totalPrice", new Document("$toDecimal", new Document("$sum",
+                        new Document("$map", new Document()
+                                .append("input", "$items")
+                                .append("in", new Document("$toDecimal", "$$this.subtotal"))))))
+                .append("updatedAt", "$$NOW"));
+    }
+    
+    private Cart findAndModify(Query query, UpdateDefinition update) {
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Cart.class);
+    }
+    
+    // ========== In-memory carts ==========
+    
+    /**
+     * Adds to a cart held in memory (demo and write-behind carts). {@code checkStock} gets the
+     * line's resulting quantity and runs before anything is changed.
+     */
+    private void addItem(Cart cart, Product product, int quantity, IntConsumer checkStock) {
+        // Check if product already in cart
+        Optional<Cart.CartItem> existingItem = findItem(cart, product.getId());
+        
+        if (existingItem.isPresent()) {
+            Cart.CartItem item = existingItem.get();
+            int newQuantity = item.getQuantity() + quantity;
+            checkStock.accept(newQuantity);
+            
+            item.setQuantity(newQuantity);
+            item.setSubtotal(effectivePrice(product).times(newQuantity));
+        } else {
+            checkStock.accept(quantity);
+            
+            Money price = effectivePrice(product);
+            String productImage = product.getImages() != null && !product.getImages().isEmpty() 
+                    ? product.getImages().get(0) : null;
+            
+            Cart.CartItem newItem = Cart.CartItem.builder()
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .productImage(productImage)
+                    .price(price)
+                    .quantity(quantity)
+                    .subtotal(price.times(quantity))
+                    .build();
+            
+            cart.getItems().add(newItem);
+        }
+        
+        cart.recalculateTotals();
+    }
+    
+    private void setItemQuantity(Cart cart, String productId, int quantity, IntConsumer checkStock) {
+        Cart.CartItem item = findItem(cart, productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
+        
+        if (quantity <= 0) {
+            cart.getItems().remove(item);
+        } else {
+            checkStock.accept(quantity);
+            item.setQuantity(quantity);
+            item.setSubtotal(item.getPrice().times(quantity));
+        }
+        
+        cart.recalculateTotals();
+    }
+    
+    // Demo carts don't place inventory holds, only a plain stock check
+    private static void checkDemoStock(Product product, int quantity) {
+        if (product.getStockQuantity() < quantity) {
+            throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        }
+    }
+    
+    private static Optional<Cart.CartItem> findItem(Cart cart, String productId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(productId))
+                .findFirst();
+    }
+    
+    private static Money effectivePrice(Product product) {
+        return Money.of(product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice());
+    }
+    
+    private static Decimal128 decimal(Money amount) {
+        return new Decimal128(amount.toBigDecimal());
     }
 
     private boolean isDemoUser(User user) {
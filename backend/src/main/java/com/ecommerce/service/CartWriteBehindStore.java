@@ -0,0 +1,378 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Cart;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind tier for carts ({@code cart.write-behind.enabled}). Active carts are
+ * kept in a bounded LRU map split into shards keyed by userId; changes are applied in memory
+ * and the dirty carts are written to the carts collection in one unordered bulk write every
+ * {@code cart.write-behind.flush-interval-ms}. A cart is also written when it is evicted and
+ * whenever {@link #flush(String)} is called, e.g. before checkout.
+ * <p>
+ * Exposes the gauges {@code cart.writebehind.dirty} and {@code cart.writebehind.flush.lag}
+ * (age of the oldest unflushed change, in seconds), the {@code cart.writebehind.flush}
+ * timer and the {@code cart.writebehind.evictions} counter.
+ */
+@Component
+public class CartWriteBehindStore {
+    
+    private static final Logger log = LoggerFactory.getLogger(CartWriteBehindStore.class);
+    
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final Shard[] shards;
+    
+    private final Timer flushTimer;
+    private final Counter evictionCounter;
+    
+    public CartWriteBehindStore(MongoTemplate mongoTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.write-behind.enabled:false}") boolean enabled,
+                                @Value("${cart.write-behind.max-carts:10000}") int maxCarts,
+                                @Value("${cart.write-behind.shards:16}") int shardCount) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        
+        int count = Math.max(1, shardCount);
+        int capacity = Math.max(1, maxCarts / count);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(capacity);
+        }
+        
+        Gauge.builder("cart.writebehind.dirty", this, CartWriteBehindStore::dirtyCount)
+                .description("Carts changed in memory but not yet written to MongoDB")
+                .register(meterRegistry);
+        Gauge.builder("cart.writebehind.flush.lag", this, CartWriteBehindStore::flushLagSeconds)
+                .description("Age of the oldest unflushed cart change")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("cart.writebehind.flush")
+                .description("Time spent writing dirty carts to MongoDB")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("cart.writebehind.evictions")
+                .description("Carts evicted from the in-memory store")
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Applies {@code mutation} to the user's cart under the cart's lock and marks it dirty.
+     * {@code loader} supplies the cart from MongoDB when it isn't in memory. If the mutation
+     * throws, the cart is left as it was and isn't marked dirty, so mutations must validate
+     * before they change anything.
+     * <p>
+     * Lock order is cart, then shard; nothing takes a cart's lock while holding a shard's.
+     */
+    public <T> T update(String userId, Function<String, Cart> loader, Function<Cart, T> mutation) {
+        Shard shard = shardFor(userId);
+        while (true) {
+            Entry entry = entry(userId, loader);
+            synchronized (entry) {
+                // Eviction only parks dirty carts, so mark the entry dirty while it's still in
+                // the map; if it was evicted clean since entry() returned it, load it again
+                boolean wasDirty;
+                synchronized (shard) {
+                    if (shard.carts.get(userId) != entry) {
+                        continue;
+                    }
+                    wasDirty = entry.isDirty();
+                    if (!wasDirty) {
+                        entry.dirtySinceNanos = System.nanoTime();
+                    }
+                }
+                T result;
+                try {
+                    result = mutation.apply(entry.cart);
+                } catch (RuntimeException e) {
+                    // Nothing changed, and a write needs this lock, so the cart is still clean
+                    if (!wasDirty) {
+                        entry.dirtySinceNanos = 0;
+                    }
+                    throw e;
+                }
+                entry.version++;
+                return result;
+            }
+        }
+    }
+    
+    public <T> T read(String userId, Function<String, Cart> loader, Function<Cart, T> reader) {
+        Entry entry = entry(userId, loader);
+        synchronized (entry) {
+            return reader.apply(entry.cart);
+        }
+    }
+    
+    /**
+     * Writes the user's cart now if it has unflushed changes, e.g. before checkout reads it
+     * from MongoDB. Throws if the write fails, since the stored cart would be stale.
+     */
+    public void flush(String userId) {
+        if (!tryFlush(userId)) {
+            throw new DataAccessResourceFailureException("Could not save the cart of user " + userId);
+        }
+    }
+    
+    /**
+     * Like {@link #flush(String)}, but a failed write is only retried by the next scheduled
+     * flush. Returns whether the cart is now written.
+     */
+    public boolean tryFlush(String userId) {
+        if (!enabled) {
+            return true;
+        }
+        Shard shard = shardFor(userId);
+        Entry entry;
+        synchronized (shard) {
+            entry = shard.carts.get(userId);
+            if (entry == null) {
+                entry = shard.evicting.get(userId);
+            }
+        }
+        if (entry == null) {
+            return true;
+        }
+        boolean written = write(List.of(entry));
+        if (written) {
+            forgetEvicted(List.of(entry));
+        }
+        return written;
+    }
+    
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        List<Entry> dirty = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.carts.values().stream()
+                        .filter(Entry::isDirty)
+                        .forEach(dirty::add);
+                // Evicted carts whose write failed earlier
+                dirty.addAll(shard.evicting.values());
+            }
+        }
+        if (!dirty.isEmpty() && write(dirty)) {
+            forgetEvicted(dirty);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+    
+    private Entry entry(String userId, Function<String, Cart> loader) {
+        Shard shard = shardFor(userId);
+        synchronized (shard) {
+            Entry entry = shard.carts.get(userId);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        
+        // Load outside the shard lock; if another thread loaded the same cart first, use theirs
+        Entry loaded = new Entry(loader.apply(userId));
+        Entry entry;
+        List<Entry> evicted;
+        synchronized (shard) {
+            entry = shard.carts.get(userId);
+            if (entry == null) {
+                // An evicted cart not yet written is newer than what MongoDB returned
+                entry = shard.evicting.remove(userId);
+            }
+            if (entry == null) {
+                entry = loaded;
+            }
+            shard.carts.put(userId, entry);
+            evicted = shard.drainEvicted();
+        }
+        if (!evicted.isEmpty()) {
+            evictionCounter.increment(evicted.size());
+            // Evicted dirty carts stay in the evicting map until written, so a failed write
+            // is retried by the next flush and a reload in the meantime sees the changes
+            List<Entry> dirty = evicted.stream().filter(Entry::isDirty).collect(Collectors.toList());
+            if (!dirty.isEmpty() && write(dirty)) {
+                forgetEvicted(dirty);
+            }
+        }
+        return entry;
+    }
+    
+    private void forgetEvicted(List<Entry> written) {
+        for (Entry entry : written) {
+            String userId = entry.cart.getUserId();
+            Shard shard = shardFor(userId);
+            synchronized (shard) {
+                if (shard.evicting.get(userId) == entry && !entry.isDirty()) {
+                    shard.evicting.remove(userId);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes snapshots of the given carts with one bulk of upserting replaces. An entry stays
+     * dirty if it changed again while the write was in flight, or if the write failed.
+     * Returns false if the write failed.
+     */
+    private boolean write(List<Entry> entries) {
+        List<Snapshot> snapshots = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            synchronized (entry) {
+                if (entry.isDirty()) {
+                    snapshots.add(new Snapshot(entry, entry.version, toDocument(entry.cart)));
+                }
+            }
+        }
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        
+        try {
+            flushTimer.record(() -> {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+                for (Snapshot snapshot : snapshots) {
+                    bulk.replaceOne(
+                            Query.query(Criteria.where("userId").is(snapshot.entry.cart.getUserId())),
+                            snapshot.document,
+                            FindAndReplaceOptions.options().upsert());
+                }
+                bulk.execute();
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} carts, will retry: {}", snapshots.size(), e.getMessage());
+            return false;
+        }
+        
+        for (Snapshot snapshot : snapshots) {
+            synchronized (snapshot.entry) {
+                if (snapshot.entry.version == snapshot.version) {
+                    snapshot.entry.dirtySinceNanos = 0;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private Document toDocument(Cart cart) {
+        cart.setUpdatedAt(LocalDateTime.now());
+        Document document = new Document();
+        mongoTemplate.getConverter().write(cart, document);
+        return document;
+    }
+    
+    private long dirtyCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.carts.values().stream().filter(Entry::isDirty).count() + shard.evicting.size();
+            }
+        }
+        return count;
+    }
+    
+    private double flushLagSeconds() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                List<Entry> entries = new ArrayList<>(shard.carts.values());
+                entries.addAll(shard.evicting.values());
+                for (Entry entry : entries) {
+                    long since = entry.dirtySinceNanos;
+                    if (since != 0 && (oldest == 0 || since < oldest)) {
+                        oldest = since;
+                    }
+                }
+            }
+        }
+        return oldest == 0 ? 0 : (now - oldest) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+    
+    private Shard shardFor(String userId) {
+        return shards[Math.floorMod(userId.hashCode(), shards.length)];
+    }
+    
+    private static final class Shard {
+        private final List<Entry> evicted = new ArrayList<>();
+        // Evicted carts with changes not yet written, by userId
+        private final Map<String, Entry> evicting = new HashMap<>();
+        private final LinkedHashMap<String, Entry> carts;
+        
+        private Shard(int capacity) {
+            this.carts = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evicted.add(eldest.getValue());
+                        if (eldest.getValue().isDirty()) {
+                            evicting.put(eldest.getKey(), eldest.getValue());
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        
+        private List<Entry> drainEvicted() {
+            if (evicted.isEmpty()) {
+                return List.of();
+            }
+            List<Entry> drained = new ArrayList<>(evicted);
+            evicted.clear();
+            return drained;
+        }
+    }
+    
+    private static final class Entry {
+        private final Cart cart;
+        private long version;
+        private volatile long dirtySinceNanos;
+        
+        private Entry(Cart cart) {
+            this.cart = cart;
+        }
+        
+        private boolean isDirty() {
+            return dirtySinceNanos != 0;
+        }
+    }
+    
+    private record Snapshot(Entry entry, long version, Document document) {
+    }
+}
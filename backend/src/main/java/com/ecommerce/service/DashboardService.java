@@ -1,63 +1,260 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.response.DashboardStatsResponse;
+import com.ecommerce.model.DashboardStats;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
-import com.ecommerce.repository.OrderRepository;
-import com.ecommerce.repository.ProductRepository;
-import com.ecommerce.repository.UserRepository;
+import com.ecommerce.model.Product;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class DashboardService {
-    
-    private final OrderRepository orderRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
-    
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardService.class);
+
+    // Orders in these states count towards revenue
+    private static final Set<Order.OrderStatus> REVENUE_STATUSES = EnumSet.of(
+            Order.OrderStatus.CONFIRMED,
+            Order.OrderStatus.PROCESSING,
+            Order.OrderStatus.SHIPPED,
+            Order.OrderStatus.DELIVERED);
+
+    private static final int LOW_STOCK_THRESHOLD = 10;
+
+    private static final String PRODUCTS_BUCKET = "__products";
+    private static final String USERS_BUCKET = "__users";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Reads the materialized counters with a single primary-key lookup. The document is
+     * rebuilt from scratch the first time it is requested.
+     */
     public DashboardStatsResponse getDashboardStats() {
-        // Calculate total revenue from completed orders
-        List<Order> completedOrders = orderRepository.findByStatus(Order.OrderStatus.DELIVERED);
-        BigDecimal totalRevenue = completedOrders.stream()
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Also add processing and shipped orders to revenue
-        List<Order> processingOrders = orderRepository.findByStatus(Order.OrderStatus.PROCESSING);
-        List<Order> shippedOrders = orderRepository.findByStatus(Order.OrderStatus.SHIPPED);
-        List<Order> confirmedOrders = orderRepository.findByStatus(Order.OrderStatus.CONFIRMED);
-        
-        totalRevenue = totalRevenue.add(processingOrders.stream()
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
-        totalRevenue = totalRevenue.add(shippedOrders.stream()
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
-        totalRevenue = totalRevenue.add(confirmedOrders.stream()
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
-        
-        long totalOrders = orderRepository.count();
-        long totalProducts = productRepository.count();
-        long totalUsers = userRepository.count();
-        long pendingOrders = orderRepository.countByStatus(Order.OrderStatus.PENDING);
-        long completedOrdersCount = orderRepository.countByStatus(Order.OrderStatus.DELIVERED);
-        long activeProducts = productRepository.countByActiveTrue();
-        long lowStockProducts = productRepository.countByStockQuantityLessThan(10);
-        
+        DashboardStats stats = mongoTemplate.findById(DashboardStats.GLOBAL_ID, DashboardStats.class);
+        if (stats == null) {
+            stats = reconcile();
+        }
+
         return DashboardStatsResponse.builder()
-                .totalRevenue(totalRevenue)
-                .totalOrders(totalOrders)
-                .totalProducts(totalProducts)
-                .totalUsers(totalUsers)
-                .pendingOrders(pendingOrders)
-                .completedOrders(completedOrdersCount)
-                .activeProducts(activeProducts)
-                .lowStockProducts(lowStockProducts)
+                .totalRevenue(stats.getTotalRevenue())
+                .totalOrders(stats.getTotalOrders())
+                .totalProducts(stats.getTotalProducts())
+                .totalUsers(stats.getTotalUsers())
+                .pendingOrders(stats.getPendingOrders())
+                .completedOrders(stats.getCompletedOrders())
+                .activeProducts(stats.getActiveProducts())
+                .lowStockProducts(stats.getLowStockProducts())
                 .build();
     }
+
+    /**
+     * Recomputes the counters from the source collections and overwrites the materialized
+     * document, repairing any drift from writes that bypass the incremental hooks
+     * (seeding, manual edits, concurrent updates racing a previous reconciliation).
+     */
+    @Scheduled(initialDelayString = "${dashboard.stats.reconcile-initial-delay-ms:30000}",
+               fixedDelayString = "${dashboard.stats.reconcile-interval-ms:900000}")
+    public DashboardStats reconcile() {
+        DashboardStats stats = computeStats();
+        stats.setId(DashboardStats.GLOBAL_ID);
+        stats.setReconciledAt(LocalDateTime.now());
+        stats = mongoTemplate.save(stats);
+        log.debug("Reconciled dashboard stats: {} orders, {} products, {} users",
+                stats.getTotalOrders(), stats.getTotalProducts(), stats.getTotalUsers());
+        return stats;
+    }
+
+    // ========== Incremental updates ==========
+
+    public void recordOrderCreated(Order order) {
+        Update update = new Update().inc("totalOrders", 1);
+        applyStatusDelta(update, order.getStatus(), order.getTotalAmount(), 1);
+        apply(update);
+    }
+
+    public void recordOrderStatusChange(Order order, Order.OrderStatus previousStatus) {
+        if (previousStatus == order.getStatus()) {
+            return;
+        }
+        Update update = new Update();
+        applyStatusDelta(update, previousStatus, order.getTotalAmount(), -1);
+        applyStatusDelta(update, order.getStatus(), order.getTotalAmount(), 1);
+        apply(update);
+    }
+
+    public void recordProductCreated(Product product) {
+        Update update = new Update().inc("totalProducts", 1);
+        if (product.isActive()) {
+            update.inc("activeProducts", 1);
+        }
+        if (isLowStock(product.getStockQuantity())) {
+            update.inc("lowStockProducts", 1);
+        }
+        apply(update);
+    }
+
+    public void recordProductChange(boolean wasActive, int previousStock, Product product) {
+        Update update = new Update();
+        if (wasActive != product.isActive()) {
+            update.inc("activeProducts", product.isActive() ? 1 : -1);
+        }
+        applyStockDelta(update, previousStock, product.getStockQuantity());
+        apply(update);
+    }
+
+    public void recordStockChange(int previousStock, int newStock) {
+        Update update = new Update();
+        applyStockDelta(update, previousStock, newStock);
+        apply(update);
+    }
+
+    public void recordUserRegistered() {
+        apply(new Update().inc("totalUsers", 1));
+    }
+
+    private void applyStatusDelta(Update update, Order.OrderStatus status, Money amount, int sign) {
+        if (status == Order.OrderStatus.PENDING) {
+            update.inc("pendingOrders", sign);
+        } else if (status == Order.OrderStatus.DELIVERED) {
+            update.inc("completedOrders", sign);
+        }
+        if (status != null && REVENUE_STATUSES.contains(status) && amount != null) {
+            Money delta = sign > 0 ? amount : amount.negate();
+            update.inc("totalRevenue", new Decimal128(delta.toBigDecimal()));
+        }
+    }
+
+    private void applyStockDelta(Update update, int previousStock, int newStock) {
+        boolean wasLow = isLowStock(previousStock);
+        boolean isLow = isLowStock(newStock);
+        if (wasLow != isLow) {
+            update.inc("lowStockProducts", isLow ? 1 : -1);
+        }
+    }
+
+    /**
+     * Applies the deltas atomically. No upsert: until the document has been built by
+     * {@link #reconcile()} there is no baseline to apply deltas to, and the first read
+     * rebuilds it anyway.
+     */
+    private void apply(Update update) {
+        if (update.getUpdateObject().isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(DashboardStats.GLOBAL_ID)),
+                update,
+                DashboardStats.class);
+    }
+
+    private static boolean isLowStock(int stockQuantity) {
+        return stockQuantity < LOW_STOCK_THRESHOLD;
+    }
+
+    // ========== Full recomputation ==========
+
+    /**
+     * Computes every dashboard counter with a single aggregation round trip.
+     * Orders are grouped by status on the server (revenue summed with $toDecimal so both
+     * string and Decimal128 amounts are handled), and the product and user counters are
+     * appended to the same result set with $unionWith. Only a handful of small documents
+     * come back, regardless of how many orders exist.
+     */
+    private DashboardStats computeStats() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("status")
+                        .count().as("count")
+                        .sum(ConvertOperators.valueOf("totalAmount").convertToDecimal()).as("revenue"),
+                UnionWithOperation.unionWith("products").pipeline(
+                        Aggregation.group()
+                                .count().as("count")
+                                .sum(ConditionalOperators
+                                        .when(ComparisonOperators.valueOf("active").equalToValue(true))
+                                        .then(1).otherwise(0)).as("active")
+                                .sum(ConditionalOperators
+                                        .when(ComparisonOperators.valueOf("stockQuantity").lessThanValue(LOW_STOCK_THRESHOLD))
+                                        .then(1).otherwise(0)).as("lowStock"),
+                        Aggregation.addFields().addFieldWithValue("_id", PRODUCTS_BUCKET).build()),
+                UnionWithOperation.unionWith("users").pipeline(
+                        Aggregation.group().count().as("count"),
+                        Aggregation.addFields().addFieldWithValue("_id", USERS_BUCKET).build())
+        );
+
+        DashboardStats stats = new DashboardStats();
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+
+        for (Document bucket : mongoTemplate.aggregate(aggregation, "orders", Document.class)) {
+            Object id = bucket.get("_id");
+            if (PRODUCTS_BUCKET.equals(id)) {
+                stats.setTotalProducts(longValue(bucket.get("count")));
+                stats.setActiveProducts(longValue(bucket.get("active")));
+                stats.setLowStockProducts(longValue(bucket.get("lowStock")));
+            } else if (USERS_BUCKET.equals(id)) {
+                stats.setTotalUsers(longValue(bucket.get("count")));
+            } else {
+                long count = longValue(bucket.get("count"));
+                stats.setTotalOrders(stats.getTotalOrders() + count);
+
+                Order.OrderStatus status = parseStatus(id);
+                if (status == Order.OrderStatus.PENDING) {
+                    stats.setPendingOrders(count);
+                } else if (status == Order.OrderStatus.DELIVERED) {
+                    stats.setCompletedOrders(count);
+                }
+                if (status != null && REVENUE_STATUSES.contains(status)) {
+                    totalRevenue = totalRevenue.add(decimalValue(bucket.get("revenue")));
+                }
+            }
+        }
+
+        stats.setTotalRevenue(totalRevenue);
+        return stats;
+    }
+
+    private static Order.OrderStatus parseStatus(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Order.OrderStatus.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static BigDecimal decimalValue(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return BigDecimal.ZERO;
+    }
 }
@@ -2,6 +2,7 @@ package com.ecommerce.service;
 
 import com.ecommerce.model.Cart;
 import com.ecommerce.model.Category;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.Payment;
 import com.ecommerce.model.Product;
@@ -35,9 +36,9 @@ public class DemoDataService {
 
     private static final String DEMO_MARKER_SLUG = "demo-seed-marker";
 
-    private static final BigDecimal TAX_RATE = new BigDecimal("0.18");
-    private static final BigDecimal FREE_SHIPPING_THRESHOLD = new BigDecimal("500");
-    private static final BigDecimal SHIPPING_COST = new BigDecimal("50");
+    private static final int TAX_RATE_PERCENT = 18;
+    private static final Money FREE_SHIPPING_THRESHOLD = Money.ofMajor(500);
+    private static final Money SHIPPING_COST = Money.ofMajor(50);
 
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
@@ -46,6 +47,8 @@ public class DemoDataService {
     private final PaymentRepository paymentRepository;
     private final CartRepository cartRepository;
     private final WishlistRepository wishlistRepository;
+    private final DashboardService dashboardService;
+    private final PurchaseService purchaseService;
 
     public void ensureDemoData(User demoUser) {
         boolean firstSeed = !categoryRepository.existsBySlug(DEMO_MARKER_SLUG);
@@ -64,6 +67,9 @@ public class DemoDataService {
                     .active(false)
                     .displayOrder(0)
                     .build());
+
+            // Seeding writes in bulk, bypassing the incremental counters
+            dashboardService.reconcile();
         }
 
         ensureHighVolumeReviews();
@@ -249,10 +255,16 @@ public class DemoDataService {
         List<Review> reviewsToSave = new ArrayList<>();
         List<Product> productsToUpdate = new ArrayList<>();
 
+        Map<String, List<Review>> existingByProduct = reviewRepository.findByProductIdIn(productsToReview.stream()
+                        .map(Product::getId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.groupingBy(Review::getProductId));
+
         for (int i = 0; i < productsToReview.size(); i++) {
             Product product = productsToReview.get(i);
 
-            List<Review> existing = reviewRepository.findByProductId(product.getId());
+            List<Review> existing = existingByProduct.getOrDefault(product.getId(), List.of());
             int existingCount = existing.size();
             int targetCount = targetReviewCountForProduct(product.getId()); // 10-20
             int toAdd = Math.max(0, targetCount - existingCount);
@@ -332,15 +344,16 @@ public class DemoDataService {
             List<Product> itemsProducts = shuffled.subList(start, end);
             List<Order.OrderItem> items = new ArrayList<>();
 
-            BigDecimal subtotal = BigDecimal.ZERO;
+            Money subtotal = Money.ZERO;
             for (Product p : itemsProducts) {
-                BigDecimal price = p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice();
+                Money price = Money.of(p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice());
                 int qty = 1 + (o % 2);
-                BigDecimal itemSubtotal = price.multiply(BigDecimal.valueOf(qty));
-                subtotal = subtotal.add(itemSubtotal);
+                Money itemSubtotal = price.times(qty);
+                subtotal = subtotal.plus(itemSubtotal);
 
                 items.add(Order.OrderItem.builder()
                         .productId(p.getId())
+                        .categoryId(p.getCategoryId())
                         .productName(p.getName())
                         .productImage((p.getImages() != null && !p.getImages().isEmpty()) ? p.getImages().get(0) : null)
                         .price(price)
@@ -349,9 +362,9 @@ public class DemoDataService {
                         .build());
             }
 
-            BigDecimal shippingCost = subtotal.compareTo(FREE_SHIPPING_THRESHOLD) >= 0 ? BigDecimal.ZERO : SHIPPING_COST;
-            BigDecimal tax = subtotal.multiply(TAX_RATE).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal totalAmount = subtotal.add(shippingCost).add(tax);
+            Money shippingCost = subtotal.isGreaterThanOrEqualTo(FREE_SHIPPING_THRESHOLD) ? Money.ZERO : SHIPPING_COST;
+            Money tax = subtotal.percent(TAX_RATE_PERCENT);
+            Money totalAmount = subtotal.plus(shippingCost).plus(tax);
 
             LocalDateTime createdAt = LocalDateTime.now().minusDays(10L * o);
             LocalDateTime deliveredAt = createdAt.plusDays(3);
@@ -388,6 +401,7 @@ public class DemoDataService {
         }
 
         ordersToSave = orderRepository.saveAll(ordersToSave);
+        ordersToSave.forEach(purchaseService::recordDelivered);
 
         List<Payment> paymentsToSave = new ArrayList<>();
         for (Order order : ordersToSave) {
@@ -430,7 +444,7 @@ public class DemoDataService {
         Cart cart = cartRepository.findByUserId(demoUser.getId()).orElseGet(() -> cartRepository.save(Cart.builder()
                 .userId(demoUser.getId())
                 .items(new ArrayList<>())
-                .totalPrice(BigDecimal.ZERO)
+                .totalPrice(Money.ZERO)
                 .totalItems(0)
                 .build()));
 
@@ -441,7 +455,7 @@ public class DemoDataService {
         if (cart.getItems().isEmpty()) {
             for (int i = 0; i < 3; i++) {
                 Product p = shuffled.get(i);
-                BigDecimal price = p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice();
+                Money price = Money.of(p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice());
                 int qty = 1 + (i % 2);
 
                 cart.getItems().add(Cart.CartItem.builder()
@@ -450,7 +464,7 @@ public class DemoDataService {
                         .productImage((p.getImages() != null && !p.getImages().isEmpty()) ? p.getImages().get(0) : null)
                         .price(price)
                         .quantity(qty)
-                        .subtotal(price.multiply(BigDecimal.valueOf(qty)))
+                        .subtotal(price.times(qty))
                         .build());
             }
             cart.recalculateTotals();
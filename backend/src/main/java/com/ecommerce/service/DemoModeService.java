@@ -1,6 +1,7 @@
 package com.ecommerce.service;
 
 import com.ecommerce.model.Cart;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.Review;
 import com.ecommerce.model.User;
@@ -8,7 +9,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -81,7 +81,7 @@ public class DemoModeService {
                     .userId(user.getId())
                     .items(new ArrayList<>())
                     .totalItems(0)
-                    .totalPrice(BigDecimal.ZERO)
+                    .totalPrice(Money.ZERO)
                     .build();
         }
         return session.cart;
@@ -0,0 +1,180 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Review;
+import com.ecommerce.model.ReviewVote;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches increments of {@code Review.helpfulCount}. Votes are added to a per-review
+ * {@link LongAdder}, so concurrent votes on the same popular review land on different cells
+ * instead of queueing on one map entry, and every {@code reviews.helpful-votes.flush-interval-ms}
+ * the counts are drained with {@code sumThenReset} and written with one unordered bulk of $inc
+ * updates. A popular review therefore costs one write per interval instead of one per vote.
+ * Pending counts are flushed on shutdown.
+ * <p>
+ * An adder that stayed at zero for a whole interval is removed from the map and drained once
+ * more by the next flush, for a vote that fetched it just before it was removed.
+ * <p>
+ * The votes in review_votes are the source of truth: a periodic reconciliation raises any
+ * count that ended up below its number of stored votes, e.g. because the process died with
+ * increments still pending.
+ */
+@Component
+public class HelpfulVoteCounter {
+    
+    private static final Logger log = LoggerFactory.getLogger(HelpfulVoteCounter.class);
+    
+    private static final Duration RECONCILE_GRACE = Duration.ofMinutes(1);
+    
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // Removed by the last flush, drained once more by the next; only touched by flush
+    private List<Map.Entry<String, LongAdder>> retired = new ArrayList<>();
+    
+    public HelpfulVoteCounter(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    public void increment(String reviewId) {
+        add(reviewId, 1);
+    }
+    
+    private void add(String reviewId, long delta) {
+        LongAdder adder = pending.get(reviewId);
+        if (adder == null) {
+            adder = pending.computeIfAbsent(reviewId, id -> new LongAdder());
+        }
+        adder.add(delta);
+    }
+    
+    /**
+     * Votes recorded for the review but not yet written to it.
+     */
+    public long pending(String reviewId) {
+        LongAdder adder = pending.get(reviewId);
+        return adder == null ? 0 : adder.sum();
+    }
+    
+    @Scheduled(fixedDelayString = "${reviews.helpful-votes.flush-interval-ms:250}")
+    public synchronized void flush() {
+        if (pending.isEmpty() && retired.isEmpty()) {
+            return;
+        }
+        // sumThenReset takes each cell atomically, so votes arriving meanwhile count towards the next flush
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : retired) {
+            drain(entry, deltas);
+        }
+        retired = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            if (!drain(entry, deltas) && pending.remove(entry.getKey(), entry.getValue())) {
+                retired.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        List<Map.Entry<String, Long>> updates = new ArrayList<>(deltas.entrySet());
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class);
+            for (Map.Entry<String, Long> update : updates) {
+                bulk.updateOne(Query.query(Criteria.where("_id").is(update.getKey())),
+                        new Update().inc("helpfulCount", update.getValue()));
+            }
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // The other updates of an unordered bulk were applied; only retry the failed ones
+            for (BulkWriteError error : e.getErrors()) {
+                Map.Entry<String, Long> failed = updates.get(error.getIndex());
+                add(failed.getKey(), failed.getValue());
+            }
+            log.warn("Could not write helpful counts of {} reviews: {}", e.getErrors().size(), e.getMessage());
+        } catch (RuntimeException e) {
+            // Nothing was acknowledged; if some updates were applied anyway, the reconciliation
+            // can't lower the count, so prefer retrying over losing votes
+            updates.forEach(update -> add(update.getKey(), update.getValue()));
+            log.warn("Could not write helpful counts of {} reviews: {}", updates.size(), e.getMessage());
+        }
+    }
+    
+    // Returns whether the adder had votes since it was last drained
+    private static boolean drain(Map.Entry<String, LongAdder> entry, Map<String, Long> deltas) {
+        long delta = entry.getValue().sumThenReset();
+        if (delta == 0) {
+            return false;
+        }
+        deltas.merge(entry.getKey(), delta, Long::sum);
+        return true;
+    }
+    
+    /**
+     * Raises each review's helpfulCount to at least its number of stored votes. Reviews voted
+     * on within the grace period are skipped, since their increments may still be pending on
+     * some instance. Counts are never lowered: reviews can carry votes from before votes were
+     * stored individually.
+     */
+    @Scheduled(initialDelayString = "${reviews.helpful-votes.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${reviews.helpful-votes.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        LocalDateTime settledBefore = LocalDateTime.now().minus(RECONCILE_GRACE);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("reviewId")
+                        .count().as("votes")
+                        .max("createdAt").as("lastVotedAt"),
+                Aggregation.match(Criteria.where("lastVotedAt").lt(settledBefore)))
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        
+        int repaired = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class);
+        int batched = 0;
+        for (Document totals : mongoTemplate.aggregate(aggregation, ReviewVote.class, Document.class)) {
+            String reviewId = totals.getString("_id");
+            if (reviewId == null) {
+                continue;
+            }
+            long votes = ((Number) totals.get("votes")).longValue();
+            bulk.updateOne(Query.query(Criteria.where("_id").is(reviewId).and("helpfulCount").lt(votes)),
+                    new Update().max("helpfulCount", votes));
+            if (++batched == 500) {
+                repaired += bulk.execute().getModifiedCount();
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class);
+                batched = 0;
+            }
+        }
+        if (batched > 0) {
+            repaired += bulk.execute().getModifiedCount();
+        }
+        if (repaired > 0) {
+            log.info("Raised helpful counts of {} reviews to their stored votes", repaired);
+        }
+        return repaired;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
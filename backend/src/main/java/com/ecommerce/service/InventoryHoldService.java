@@ -0,0 +1,363 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.model.InventoryHold;
+import com.ecommerce.model.InventoryHoldTotal;
+import com.ecommerce.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the inventory_holds ledger: while an item sits in a cart its quantity is held for
+ * that shopper, so other shoppers only see the available-to-promise quantity
+ * ({@code stockQuantity - active holds}) instead of all of it. Holds expire after
+ * {@code inventory.hold-ttl-minutes} and are turned into real stock decrements at checkout.
+ * <p>
+ * Each product's held units are kept as a running total striped over
+ * {@code inventory.hold-total-stripes} {@link InventoryHoldTotal} documents, so shoppers
+ * racing for a popular product don't all queue on one document. Every stripe may hold its
+ * share of the stock; a new hold claims its units with a conditional {@code $inc} on a random
+ * stripe, spilling over to the others when that stripe is short, before the hold itself is
+ * written. Since no stripe exceeds its share, the total never exceeds stock. Expired holds
+ * are released by a sweeper so the totals come down with them, and a periodic reconciliation
+ * recomputes the totals from the ledger to repair a write lost in between.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryHoldService {
+    
+    private static final Logger log = LoggerFactory.getLogger(InventoryHoldService.class);
+    private static final int MAX_HOLD_ATTEMPTS = 3;
+    // Totals changed more recently than this may have a hold write still in flight
+    private static final Duration RECONCILE_GRACE = Duration.ofMinutes(1);
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Value("${inventory.hold-ttl-minutes:15}")
+    private long holdTtlMinutes;
+    
+    @Value("${inventory.hold-total-stripes:8}")
+    private int holdTotalStripes;
+    
+    /**
+     * Units of the product that can still be promised to {@code userId}: stock minus every
+     * other shopper's active holds.
+     */
+    public int availableToPromise(Product product, String userId) {
+        return Math.max(0, product.getStockQuantity() - activeHolds(product.getId(), userId));
+    }
+    
+    /**
+     * Sets the user's hold on the product to {@code quantity} units and refreshes its expiry.
+     * The increase over the user's previous hold is claimed on the product's total only if
+     * the total stays within stock, so of two shoppers racing for the last units exactly one
+     * succeeds; the other gets a {@link BadRequestException}. The hold is then written
+     * provided it still has the quantity the claim was based on, otherwise the claim is
+     * undone and the whole step retried.
+     */
+    public void placeHold(Product product, String userId, int quantity) {
+        String id = InventoryHold.idFor(product.getId(), userId);
+        
+        for (int attempt = 0; attempt < MAX_HOLD_ATTEMPTS; attempt++) {
+            InventoryHold current = mongoTemplate.findById(id, InventoryHold.class);
+            int previous = current == null ? 0 : current.getQuantity();
+            int delta = quantity - previous;
+            
+            if (!adjustHeld(product.getId(), delta, product.getStockQuantity())) {
+                int othersHeld = held(product.getId()) - previous;
+                throw new BadRequestException("Insufficient stock. Available: "
+                        + Math.max(0, product.getStockQuantity() - othersHeld));
+            }
+            if (writeHold(current, product.getId(), userId, quantity)) {
+                return;
+            }
+            adjustHeld(product.getId(), -delta, Integer.MAX_VALUE);
+        }
+        throw new BadRequestException("Your cart was changed concurrently, please try again");
+    }
+    
+    private boolean writeHold(InventoryHold current, String productId, String userId, int quantity) {
+        LocalDateTime now = LocalDateTime.now();
+        if (current == null) {
+            try {
+                mongoTemplate.insert(InventoryHold.builder()
+                        .id(InventoryHold.idFor(productId, userId))
+                        .productId(productId)
+                        .userId(userId)
+                        .quantity(quantity)
+                        .expiresAt(now.plusMinutes(holdTtlMinutes))
+                        .updatedAt(now)
+                        .build());
+                return true;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(current.getId()).and("quantity").is(current.getQuantity())),
+                new Update()
+                        .set("quantity", quantity)
+                        .set("expiresAt", now.plusMinutes(holdTtlMinutes))
+                        .set("updatedAt", now),
+                InventoryHold.class).getMatchedCount() > 0;
+    }
+    
+    /**
+     * Adds {@code delta} to the product's held total. An increase is only applied while the
+     * new total stays within {@code stock}; returns whether it was applied. A decrease goes to
+     * a random stripe, which may take that stripe below zero; the stripes' sum stays right.
+     */
+    private boolean adjustHeld(String productId, int delta, int stock) {
+        if (delta == 0) {
+            return true;
+        }
+        int first = ThreadLocalRandom.current().nextInt(stripes());
+        if (delta < 0) {
+            incHeld(productId, first, delta, Integer.MAX_VALUE);
+            return true;
+        }
+        if (delta > stock) {
+            return false;
+        }
+        if (incHeld(productId, first, delta, share(stock, first) - delta)) {
+            return true;
+        }
+        return spillOver(productId, delta, stock, first);
+    }
+    
+    /**
+     * Claims {@code delta} in parts across the stripes that have room left, starting at
+     * {@code first}, and gives the parts back if together they don't have enough.
+     */
+    private boolean spillOver(String productId, int delta, int stock, int first) {
+        Map<Integer, Integer> held = new HashMap<>();
+        for (InventoryHoldTotal stripe : mongoTemplate.find(stripesOf(productId), InventoryHoldTotal.class)) {
+            held.put(stripe.getStripe(), stripe.getHeld());
+        }
+        
+        Map<Integer, Integer> claimed = new HashMap<>();
+        int remaining = delta;
+        for (int i = 0; i < stripes() && remaining > 0; i++) {
+            int stripe = (first + i) % stripes();
+            int share = share(stock, stripe);
+            int part = Math.min(remaining, share - held.getOrDefault(stripe, 0));
+            if (part > 0 && incHeld(productId, stripe, part, share - part)) {
+                claimed.put(stripe, part);
+                remaining -= part;
+            }
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        claimed.forEach((stripe, part) -> incHeld(productId, stripe, -part, Integer.MAX_VALUE));
+        return false;
+    }
+    
+    /**
+     * Adds {@code delta} to one stripe if it holds at most {@code maxHeld} units, creating the
+     * stripe if needed; returns whether it was applied. The upsert of a missing stripe can't
+     * match an existing one that fails the condition, so that case shows up as a duplicate key.
+     */
+    private boolean incHeld(String productId, int stripe, int delta, int maxHeld) {
+        if (maxHeld < 0) {
+            return false;
+        }
+        Criteria criteria = Criteria.where("_id").is(InventoryHoldTotal.idFor(productId, stripe));
+        if (maxHeld < Integer.MAX_VALUE) {
+            criteria.and("held").lte(maxHeld);
+        }
+        Update update = new Update()
+                .inc("held", delta)
+                .inc("version", 1)
+                .set("updatedAt", LocalDateTime.now())
+                .setOnInsert("productId", productId)
+                .setOnInsert("stripe", stripe);
+        try {
+            mongoTemplate.upsert(Query.query(criteria), update, InventoryHoldTotal.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+    
+    // The stock is split as evenly as possible, the first stock % stripes stripes taking one more
+    private int share(int stock, int stripe) {
+        return stock / stripes() + (stripe < stock % stripes() ? 1 : 0);
+    }
+    
+    private int stripes() {
+        return Math.max(1, holdTotalStripes);
+    }
+    
+    private Query stripesOf(String productId) {
+        List<String> ids = new ArrayList<>(stripes());
+        for (int stripe = 0; stripe < stripes(); stripe++) {
+            ids.add(InventoryHoldTotal.idFor(productId, stripe));
+        }
+        return Query.query(Criteria.where("_id").in(ids));
+    }
+    
+    public void releaseHold(String productId, String userId) {
+        release(Query.query(Criteria.where("_id").is(InventoryHold.idFor(productId, userId))));
+    }
+    
+    public void releaseAll(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        query.fields().include("_id");
+        for (InventoryHold hold : mongoTemplate.find(query, InventoryHold.class)) {
+            release(Query.query(Criteria.where("_id").is(hold.getId())));
+        }
+    }
+    
+    // Removes the hold first, so a hold is never left in the ledger without being counted
+    private boolean release(Query query) {
+        InventoryHold removed = mongoTemplate.findAndRemove(query, InventoryHold.class);
+        if (removed == null) {
+            return false;
+        }
+        adjustHeld(removed.getProductId(), -removed.getQuantity(), Integer.MAX_VALUE);
+        return true;
+    }
+    
+    /**
+     * Units of the product held by carts, excluding {@code excludedUserId}'s own hold.
+     */
+    public int activeHolds(String productId, String excludedUserId) {
+        int held = held(productId);
+        if (excludedUserId != null) {
+            InventoryHold own = mongoTemplate.findById(InventoryHold.idFor(productId, excludedUserId), InventoryHold.class);
+            if (own != null) {
+                held -= own.getQuantity();
+            }
+        }
+        return Math.max(0, held);
+    }
+    
+    private int held(String productId) {
+        return mongoTemplate.find(stripesOf(productId), InventoryHoldTotal.class).stream()
+                .mapToInt(InventoryHoldTotal::getHeld)
+                .sum();
+    }
+    
+    // ========== Expiry and reconciliation ==========
+    
+    /**
+     * Releases the holds that expired. The expiry is part of the removal filter, so a hold
+     * refreshed in the meantime is left alone.
+     */
+    @Scheduled(initialDelayString = "${inventory.hold-sweep-interval-ms:30000}",
+               fixedDelayString = "${inventory.hold-sweep-interval-ms:30000}")
+    public int releaseExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        Query expired = Query.query(Criteria.where("expiresAt").lte(now));
+        expired.fields().include("_id");
+        
+        int released = 0;
+        for (InventoryHold hold : mongoTemplate.find(expired, InventoryHold.class)) {
+            if (release(Query.query(Criteria.where("_id").is(hold.getId()).and("expiresAt").lte(now)))) {
+                released++;
+            }
+        }
+        if (released > 0) {
+            log.debug("Released {} expired inventory holds", released);
+        }
+        return released;
+    }
+    
+    /**
+     * Recomputes each product's held total from the ledger and corrects the ones that
+     * drifted, e.g. from a crash between removing a hold and decrementing its total. The
+     * stripes are read before the ledger is summed, and a total is only corrected if none of
+     * its stripes changed since, so a hold placed or released meanwhile is never rolled back;
+     * totals with a stripe changed within the last minute are skipped because their hold write
+     * may still be in flight. The correction goes to one stripe, conditional on its version.
+     */
+    @Scheduled(initialDelayString = "${inventory.hold-reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${inventory.hold-reconcile-interval-ms:600000}")
+    public int reconcile() {
+        Map<String, List<InventoryHoldTotal>> totals = new HashMap<>();
+        for (InventoryHoldTotal stripe : mongoTemplate.findAll(InventoryHoldTotal.class)) {
+            if (stripe.getProductId() != null) {
+                totals.computeIfAbsent(stripe.getProductId(), productId -> new ArrayList<>()).add(stripe);
+            }
+        }
+        
+        Map<String, Integer> ledger = new HashMap<>();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("productId").sum("quantity").as("held"));
+        for (Document result : mongoTemplate.aggregate(aggregation, InventoryHold.class, Document.class)) {
+            if (result.getString("_id") != null) {
+                ledger.put(result.getString("_id"), ((Number) result.get("held")).intValue());
+            }
+        }
+        
+        LocalDateTime settledBefore = LocalDateTime.now().minus(RECONCILE_GRACE);
+        int repaired = 0;
+        for (String productId : ledger.keySet()) {
+            if (!totals.containsKey(productId)) {
+                // Holds placed before totals were kept; only seed if nothing has claimed one since
+                try {
+                    mongoTemplate.insert(InventoryHoldTotal.builder()
+                            .id(InventoryHoldTotal.idFor(productId, 0))
+                            .productId(productId)
+                            .stripe(0)
+                            .held(ledger.get(productId))
+                            .updatedAt(LocalDateTime.now())
+                            .build());
+                    repaired++;
+                } catch (DuplicateKeyException ignored) {
+                    // Picked up by the next run
+                }
+            }
+        }
+        for (Map.Entry<String, List<InventoryHoldTotal>> total : totals.entrySet()) {
+            List<InventoryHoldTotal> stripes = total.getValue();
+            int drift = ledger.getOrDefault(total.getKey(), 0)
+                    - stripes.stream().mapToInt(InventoryHoldTotal::getHeld).sum();
+            boolean settled = stripes.stream()
+                    .allMatch(stripe -> stripe.getUpdatedAt() != null && !stripe.getUpdatedAt().isAfter(settledBefore));
+            if (drift == 0 || !settled || !unchanged(total.getKey(), stripes)) {
+                continue;
+            }
+            InventoryHoldTotal stripe = stripes.get(0);
+            long modified = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(stripe.getId()).and("version").is(stripe.getVersion())),
+                    new Update().inc("held", drift).inc("version", 1).set("updatedAt", LocalDateTime.now()),
+                    InventoryHoldTotal.class).getModifiedCount();
+            repaired += (int) modified;
+        }
+        if (repaired > 0) {
+            log.info("Repaired held totals of {} products", repaired);
+        }
+        return repaired;
+    }
+    
+    // Whether the product's stripes are still the ones read, with the same versions
+    private boolean unchanged(String productId, List<InventoryHoldTotal> read) {
+        Map<String, Long> versions = new HashMap<>();
+        for (InventoryHoldTotal stripe : mongoTemplate.find(stripesOf(productId), InventoryHoldTotal.class)) {
+            versions.put(stripe.getId(), stripe.getVersion());
+        }
+        return versions.size() == read.size()
+                && read.stream().allMatch(stripe -> Long.valueOf(stripe.getVersion()).equals(versions.get(stripe.getId())));
+    }
+}
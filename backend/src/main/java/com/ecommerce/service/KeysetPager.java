@@ -0,0 +1,166 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.response.CursorPageResponse;
+import com.ecommerce.exception.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset ("seek") pagination: instead of skipping the rows of earlier pages, each page
+ * starts strictly after the sort value and _id of the previous page's last row, so with an
+ * index on (filter..., sortField, _id) every page costs the same however deep it is.
+ * <p>
+ * The cursor is the base64url-encoded sort value and id of that last row. Rows whose sort
+ * field is missing or null sort as MongoDB does: first ascending, last descending.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetPager {
+    
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    private final MongoTemplate mongoTemplate;
+    
+    /**
+     * Reads the page after {@code cursor} ({@code null} or blank for the first page).
+     *
+     * @param filter    the listing's own criteria; not modified
+     * @param sortValue reads the sort field from a loaded row, to build the next cursor
+     * @param idOf      reads the id from a loaded row
+     * @param total     how to count, if at all
+     */
+    public <T> CursorPageResponse<T> page(Query filter, Class<T> type, String sortField, Sort.Direction direction,
+                                          String cursor, int size,
+                                          Function<T, Object> sortValue, Function<T, String> idOf,
+                                          Total total) {
+        int pageSize = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        
+        Query query = Query.of(filter).limit(pageSize + 1);
+        query.with(Sort.by(new Sort.Order(direction, sortField), new Sort.Order(direction, "_id")));
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(after(Cursor.decode(cursor), sortField, direction));
+        }
+        
+        List<T> rows = new ArrayList<>(mongoTemplate.find(query, type));
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows.remove(rows.size() - 1);
+        }
+        
+        String nextCursor = null;
+        if (hasNext) {
+            T last = rows.get(rows.size() - 1);
+            nextCursor = new Cursor(sortValue.apply(last), idOf.apply(last)).encode();
+        }
+        
+        Long totalElements = switch (total) {
+            case NONE -> null;
+            case ESTIMATED -> mongoTemplate.estimatedCount(type);
+            case EXACT -> mongoTemplate.count(Query.of(filter).limit(0).skip(0), type);
+        };
+        
+        return CursorPageResponse.<T>builder()
+                .content(rows)
+                .size(pageSize)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .totalElements(totalElements)
+                .totalEstimated(total == Total.ESTIMATED)
+                .build();
+    }
+    
+    static Criteria after(Cursor cursor, String sortField, Sort.Direction direction) {
+        boolean ascending = direction.isAscending();
+        // The query mapper converts _id for is/$in but not for range operators, and a string
+        // never compares with an ObjectId
+        Object id = ObjectId.isValid(cursor.id()) ? new ObjectId(cursor.id()) : cursor.id();
+        Criteria sameValueLaterId = ascending
+                ? Criteria.where("_id").gt(id)
+                : Criteria.where("_id").lt(id);
+        
+        if (cursor.value() == null) {
+            Criteria nullValue = Criteria.where(sortField).is(null);
+            if (ascending) {
+                // Nulls come first ascending, so every non-null row is still ahead
+                return new Criteria().orOperator(
+                        new Criteria().andOperator(nullValue, sameValueLaterId),
+                        Criteria.where(sortField).ne(null));
+            }
+            return new Criteria().andOperator(nullValue, sameValueLaterId);
+        }
+        
+        Criteria laterValue = ascending
+                ? Criteria.where(sortField).gt(cursor.value())
+                : Criteria.where(sortField).lt(cursor.value());
+        Criteria sameValue = new Criteria().andOperator(Criteria.where(sortField).is(cursor.value()), sameValueLaterId);
+        if (ascending) {
+            return new Criteria().orOperator(laterValue, sameValue);
+        }
+        // Nulls come last descending
+        return new Criteria().orOperator(laterValue, sameValue, Criteria.where(sortField).is(null));
+    }
+    
+    /**
+     * How {@link #page} fills in the total: not at all, from collection metadata (constant
+     * time, ignores the filter) or with a count of the filter.
+     */
+    public enum Total {
+        NONE, ESTIMATED, EXACT
+    }
+    
+    record Cursor(Object value, String id) {
+        
+        // Format: <type>:<id>:<value>; the value goes last since strings may contain ':'
+        String encode() {
+            String payload;
+            if (value == null) {
+                payload = "z:" + id + ":";
+            } else if (value instanceof LocalDateTime dateTime) {
+                payload = "t:" + id + ":" + dateTime;
+            } else if (value instanceof BigDecimal decimal) {
+                payload = "m:" + id + ":" + decimal.toPlainString();
+            } else if (value instanceof Number number) {
+                payload = "f:" + id + ":" + number.doubleValue();
+            } else {
+                payload = "s:" + id + ":" + value;
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String cursor) {
+            try {
+                String payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int idEnd = payload.indexOf(':', 2);
+                if (payload.length() < 2 || payload.charAt(1) != ':' || idEnd < 0) {
+                    throw new BadRequestException("Invalid cursor");
+                }
+                String id = payload.substring(2, idEnd);
+                String value = payload.substring(idEnd + 1);
+                return switch (payload.charAt(0)) {
+                    case 'z' -> new Cursor(null, id);
+                    case 't' -> new Cursor(LocalDateTime.parse(value), id);
+                    case 'm' -> new Cursor(new Decimal128(new BigDecimal(value)), id);
+                    case 'f' -> new Cursor(Double.parseDouble(value), id);
+                    case 's' -> new Cursor(value, id);
+                    default -> throw new BadRequestException("Invalid cursor");
+                };
+            } catch (IllegalArgumentException | java.time.DateTimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.service;
+
+/**
+ * Produces order numbers that are unique across every application instance. The strategy
+ * is picked with {@code order.number.strategy}: {@code sequence} (default) or {@code snowflake}.
+ */
+public interface OrderNumberGenerator {
+    
+    String PREFIX = "ORD";
+    
+    String nextOrderNumber();
+}
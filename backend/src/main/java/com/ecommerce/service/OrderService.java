@@ -1,10 +1,12 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.request.OrderRequest;
+import com.ecommerce.dto.response.CursorPageResponse;
 import com.ecommerce.dto.response.OrderResponse;
 import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.Cart;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.Product;
 import com.ecommerce.model.User;
@@ -14,14 +16,21 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -35,10 +44,19 @@ public class OrderService {
     private final UserService userService;
     private final PaymentService paymentService;
     private final DemoModeService demoModeService;
+    private final DashboardService dashboardService;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final StockService stockService;
+    private final ProductBatchLoader productBatchLoader;
+    private final InventoryHoldService inventoryHoldService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final KeysetPager keysetPager;
+    private final PurchaseService purchaseService;
+    private final MongoTemplate mongoTemplate;
     
-    private static final BigDecimal TAX_RATE = new BigDecimal("0.18"); // 18% tax
-    private static final BigDecimal FREE_SHIPPING_THRESHOLD = new BigDecimal("500");
-    private static final BigDecimal SHIPPING_COST = new BigDecimal("50");
+    private static final int TAX_RATE_PERCENT = 18; // 18% tax
+    private static final Money FREE_SHIPPING_THRESHOLD = Money.ofMajor(500);
+    private static final Money SHIPPING_COST = Money.ofMajor(50);
     
     @Transactional
     public OrderResponse createOrder(OrderRequest request) {
@@ -51,38 +69,28 @@ public class OrderService {
             throw new BadRequestException("Cart is empty");
         }
         
-        // Validate stock and create order items
+        // Reserve stock (demo users only get a stock check) and create order items
+        Map<String, Product> products = isDemoUser
+                ? checkStock(cart.getItems())
+                : reserveStock(cart.getItems(), user.getId());
+        
         List<Order.OrderItem> orderItems = cart.getItems().stream()
-                .map(cartItem -> {
-                    Product product = productRepository.findById(cartItem.getProductId())
-                            .orElseThrow(() -> new ResourceNotFoundException("Product", "id", cartItem.getProductId()));
-                    
-                    if (product.getStockQuantity() < cartItem.getQuantity()) {
-                        throw new BadRequestException("Insufficient stock for " + product.getName());
-                    }
-
-                    if (!isDemoUser) {
-                        // Reduce stock
-                        product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
-                        productRepository.save(product);
-                    }
-                    
-                    return Order.OrderItem.builder()
-                            .productId(cartItem.getProductId())
-                            .productName(cartItem.getProductName())
-                            .productImage(cartItem.getProductImage())
-                            .price(cartItem.getPrice())
-                            .quantity(cartItem.getQuantity())
-                            .subtotal(cartItem.getSubtotal())
-                            .build();
-                })
+                .map(cartItem -> Order.OrderItem.builder()
+                        .productId(cartItem.getProductId())
+                        .categoryId(products.get(cartItem.getProductId()).getCategoryId())
+                        .productName(cartItem.getProductName())
+                        .productImage(cartItem.getProductImage())
+                        .price(cartItem.getPrice())
+                        .quantity(cartItem.getQuantity())
+                        .subtotal(cartItem.getSubtotal())
+                        .build())
                 .collect(Collectors.toList());
         
-        BigDecimal subtotal = cart.getTotalPrice();
-        BigDecimal shippingCost = subtotal.compareTo(FREE_SHIPPING_THRESHOLD) >= 0 
-                ? BigDecimal.ZERO : SHIPPING_COST;
-        BigDecimal tax = subtotal.multiply(TAX_RATE).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal totalAmount = subtotal.add(shippingCost).add(tax);
+        Money subtotal = cart.getTotalPrice();
+        Money shippingCost = subtotal.isGreaterThanOrEqualTo(FREE_SHIPPING_THRESHOLD) 
+                ? Money.ZERO : SHIPPING_COST;
+        Money tax = subtotal.percent(TAX_RATE_PERCENT);
+        Money totalAmount = subtotal.plus(shippingCost).plus(tax);
         
         Order.ShippingAddress shippingAddress = Order.ShippingAddress.builder()
                 .fullName(request.getShippingAddress().getFullName())
@@ -94,8 +102,7 @@ public class OrderService {
                 .country(request.getShippingAddress().getCountry())
                 .build();
         
-        // Generate order number
-        String orderNumber = "ORD" + System.currentTimeMillis();
+        String orderNumber = orderNumberGenerator.nextOrderNumber();
         String userName = (user.getFirstName() != null ? user.getFirstName() : "") + 
                          (user.getLastName() != null ? " " + user.getLastName() : "");
         
@@ -118,15 +125,25 @@ public class OrderService {
                 .createdAt(isDemoUser ? LocalDateTime.now() : null)
                 .build();
 
-        order = isDemoUser
-                ? demoModeService.saveOrder(user, order)
-                : orderRepository.save(order);
+        if (isDemoUser) {
+            order = demoModeService.saveOrder(user, order);
+        } else {
+            try {
+                order = orderRepository.save(order);
+            } catch (RuntimeException e) {
+                releaseStock(cart.getItems());
+                throw e;
+            }
+        }
         
         // Process payment (dummy implementation)
         paymentService.processPayment(order, request.getPaymentMethod());
 
         if (isDemoUser) {
             demoModeService.saveOrder(user, order);
+        } else {
+            dashboardService.recordOrderCreated(order);
+            salesAnalyticsService.recordOrderCreated(order);
         }
         
         // Clear cart after successful order
@@ -135,6 +152,59 @@ public class OrderService {
         return OrderResponse.fromOrder(order);
     }
     
+    /**
+     * Atomically takes each line's quantity from stock, converting the shopper's cart holds
+     * into real decrements. A line also fails if what is left after the decrement no longer
+     * covers other shoppers' active holds. If any line can't be fulfilled, the lines already
+     * taken are put back before the error propagates.
+     */
+    private Map<String, Product> reserveStock(List<Cart.CartItem> items, String userId) {
+        Map<String, Product> reserved = new HashMap<>();
+        List<Cart.CartItem> reservedItems = new ArrayList<>();
+        try {
+            for (Cart.CartItem item : items) {
+                Product product = stockService.decrementStock(item.getProductId(), item.getQuantity());
+                if (product == null) {
+                    if (!productRepository.existsById(item.getProductId())) {
+                        throw new ResourceNotFoundException("Product", "id", item.getProductId());
+                    }
+                    throw new BadRequestException("Insufficient stock for " + item.getProductName());
+                }
+                reservedItems.add(item);
+                reserved.put(product.getId(), product);
+                
+                if (inventoryHoldService.activeHolds(product.getId(), userId) > product.getStockQuantity()) {
+                    throw new BadRequestException("Insufficient stock for " + item.getProductName());
+                }
+            }
+        } catch (RuntimeException e) {
+            releaseStock(reservedItems);
+            throw e;
+        }
+        return reserved;
+    }
+    
+    private void releaseStock(List<Cart.CartItem> items) {
+        stockService.incrementStock(items.stream()
+                .collect(Collectors.toMap(Cart.CartItem::getProductId, Cart.CartItem::getQuantity, Integer::sum)));
+    }
+    
+    private Map<String, Product> checkStock(List<Cart.CartItem> items) {
+        Map<String, Product> products = productBatchLoader.loadAll(items.stream()
+                .map(Cart.CartItem::getProductId)
+                .collect(Collectors.toList()));
+        for (Cart.CartItem item : items) {
+            Product product = products.get(item.getProductId());
+            if (product == null) {
+                throw new ResourceNotFoundException("Product", "id", item.getProductId());
+            }
+            if (product.getStockQuantity() < item.getQuantity()) {
+                throw new BadRequestException("Insufficient stock for " + product.getName());
+            }
+        }
+        return products;
+    }
+    
     public Page<OrderResponse> getUserOrders(Pageable pageable) {
         User user = userService.getCurrentUser();
 
@@ -155,6 +225,45 @@ public class OrderService {
                 .map(OrderResponse::fromOrder);
     }
     
+    public CursorPageResponse<OrderResponse> getUserOrders(String cursor, int size, boolean withTotal) {
+        User user = userService.getCurrentUser();
+
+        if (demoModeService.isDemoUserId(user.getId())) {
+            return demoOrdersAfter(demoModeService.getOrders(user), cursor, size, withTotal);
+        }
+
+        Query filter = new Query(Criteria.where("userId").is(user.getId()));
+        return keysetPager.page(filter, Order.class, "createdAt", Sort.Direction.DESC, cursor, size,
+                        Order::getCreatedAt, Order::getId,
+                        withTotal ? KeysetPager.Total.EXACT : KeysetPager.Total.NONE)
+                .map(OrderResponse::fromOrder);
+    }
+
+    // Demo orders live in memory already sorted newest first; the cursor is the last order's id
+    private CursorPageResponse<OrderResponse> demoOrdersAfter(List<Order> orders, String cursor, int size,
+                                                              boolean withTotal) {
+        int pageSize = Math.min(Math.max(1, size), KeysetPager.MAX_PAGE_SIZE);
+        int start = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            start = orders.size();
+            for (int i = 0; i < orders.size(); i++) {
+                if (cursor.equals(orders.get(i).getId())) {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        int end = Math.min(start + pageSize, orders.size());
+        boolean hasNext = end < orders.size();
+        return CursorPageResponse.<OrderResponse>builder()
+                .content(orders.subList(start, end).stream().map(OrderResponse::fromOrder).collect(Collectors.toList()))
+                .size(pageSize)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? orders.get(end - 1).getId() : null)
+                .totalElements(withTotal ? (long) orders.size() : null)
+                .build();
+    }
+    
     public OrderResponse getOrderById(String orderId) {
         User user = userService.getCurrentUser();
 
@@ -178,6 +287,29 @@ public class OrderService {
         return OrderResponse.fromOrder(order);
     }
     
+    public OrderResponse getOrderByNumber(String orderNumber) {
+        User user = userService.getCurrentUser();
+
+        if (demoModeService.isDemoUserId(user.getId())) {
+            return demoModeService.getOrders(user).stream()
+                    .filter(order -> orderNumber.equals(order.getOrderNumber()))
+                    .findFirst()
+                    .map(OrderResponse::fromOrder)
+                    .orElseThrow(() -> new ResourceNotFoundException("Order", "orderNumber", orderNumber));
+        }
+
+        Order order = orderRepository.findByOrderNumber(orderNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "orderNumber", orderNumber));
+        
+        // Verify order belongs to user or user is admin
+        if (!order.getUserId().equals(user.getId()) && 
+            !user.getRoles().contains(User.Role.ADMIN)) {
+            throw new BadRequestException("Access denied");
+        }
+        
+        return OrderResponse.fromOrder(order);
+    }
+    
     public OrderResponse cancelOrder(String orderId) {
         User user = userService.getCurrentUser();
 
@@ -213,17 +345,19 @@ public class OrderService {
             throw new BadRequestException("Order cannot be cancelled at this stage");
         }
         
-        // Restore stock
-        order.getItems().forEach(item -> {
-            Product product = productRepository.findById(item.getProductId()).orElse(null);
-            if (product != null) {
-                product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                productRepository.save(product);
-            }
-        });
+        // Only the cancel that moves the order restores its stock
+        StatusChange change = changeStatus(orderId,
+                Criteria.where("status").in(Order.OrderStatus.PENDING, Order.OrderStatus.CONFIRMED),
+                Order.OrderStatus.CANCELLED);
+        if (change == null) {
+            throw new BadRequestException("Order cannot be cancelled at this stage");
+        }
+        order = change.order();
         
-        order.setStatus(Order.OrderStatus.CANCELLED);
-        order = orderRepository.save(order);
+        stockService.incrementStock(order.getItems().stream()
+                .collect(Collectors.toMap(Order.OrderItem::getProductId, Order.OrderItem::getQuantity, Integer::sum)));
+        dashboardService.recordOrderStatusChange(order, change.previousStatus());
+        salesAnalyticsService.recordOrderStatusChange(order, change.previousStatus());
         return OrderResponse.fromOrder(order);
     }
     
@@ -232,6 +366,13 @@ public class OrderService {
         return orderRepository.findAll(pageable).map(OrderResponse::fromOrder);
     }
     
+    public CursorPageResponse<OrderResponse> getAllOrders(String cursor, int size, boolean withTotal) {
+        return keysetPager.page(new Query(), Order.class, "createdAt", Sort.Direction.DESC, cursor, size,
+                        Order::getCreatedAt, Order::getId,
+                        withTotal ? KeysetPager.Total.ESTIMATED : KeysetPager.Total.NONE)
+                .map(OrderResponse::fromOrder);
+    }
+    
     public OrderResponse getOrderByIdAdmin(String orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
@@ -243,19 +384,21 @@ public class OrderService {
     }
     
     public OrderResponse updateOrderStatus(String orderId, String status) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
-        
         Order.OrderStatus newStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-        order.setStatus(newStatus);
         
-        if (newStatus == Order.OrderStatus.SHIPPED) {
-            order.setShippedAt(LocalDateTime.now());
-        } else if (newStatus == Order.OrderStatus.DELIVERED) {
-            order.setDeliveredAt(LocalDateTime.now());
+        // The rollups count each transition once, so only the update that changes the status
+        // records it; a repeated transition to the same status is a no-op
+        StatusChange change = changeStatus(orderId, Criteria.where("status").ne(newStatus), newStatus);
+        if (change == null) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+            return OrderResponse.fromOrder(order);
         }
         
-        order = orderRepository.save(order);
+        Order order = change.order();
+        dashboardService.recordOrderStatusChange(order, change.previousStatus());
+        salesAnalyticsService.recordOrderStatusChange(order, change.previousStatus());
+        purchaseService.recordStatusChange(order, change.previousStatus());
         return OrderResponse.fromOrder(order);
     }
     
@@ -267,4 +410,43 @@ public class OrderService {
         order = orderRepository.save(order);
         return OrderResponse.fromOrder(order);
     }
+    
+    /**
+     * Moves the order to {@code newStatus} if its current status matches {@code from}, as one
+     * conditional update. Returns the order as updated together with the status it replaced,
+     * or {@code null} if the order doesn't exist or its status didn't match.
+     */
+    private StatusChange changeStatus(String orderId, Criteria from, Order.OrderStatus newStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set("status", newStatus)
+                .set("updatedAt", now);
+        if (newStatus == Order.OrderStatus.SHIPPED) {
+            update.set("shippedAt", now);
+        } else if (newStatus == Order.OrderStatus.DELIVERED) {
+            update.set("deliveredAt", now);
+        }
+        
+        Order previous = mongoTemplate.findAndModify(
+                Query.query(new Criteria().andOperator(Criteria.where("_id").is(orderId), from)),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                Order.class);
+        if (previous == null) {
+            return null;
+        }
+        
+        Order.OrderStatus previousStatus = previous.getStatus();
+        previous.setStatus(newStatus);
+        previous.setUpdatedAt(now);
+        if (newStatus == Order.OrderStatus.SHIPPED) {
+            previous.setShippedAt(now);
+        } else if (newStatus == Order.OrderStatus.DELIVERED) {
+            previous.setDeliveredAt(now);
+        }
+        return new StatusChange(previous, previousStatus);
+    }
+    
+    private record StatusChange(Order order, Order.OrderStatus previousStatus) {
+    }
 }
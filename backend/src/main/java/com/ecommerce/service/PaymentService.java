@@ -1,10 +1,12 @@
 package com.ecommerce.service;
 
+import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.Payment;
 import com.ecommerce.repository.OrderRepository;
 import com.ecommerce.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -38,7 +40,11 @@ public class PaymentService {
                 .build();
 
         if (!isDemoUser) {
-            payment = paymentRepository.save(payment);
+            try {
+                payment = paymentRepository.save(payment);
+            } catch (DuplicateKeyException e) {
+                throw new BadRequestException("Payment has already been initiated for this order");
+            }
         }
         
         // Simulate payment processing
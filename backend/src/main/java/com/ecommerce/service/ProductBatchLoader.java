@@ -0,0 +1,63 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the products referenced by a cart, order or wishlist with one $in query instead of
+ * one findById per line.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductBatchLoader {
+    
+    private final ProductRepository productRepository;
+    
+    /**
+     * Returns the products with the given ids keyed by id. Ids that don't match a product
+     * are simply absent from the map.
+     */
+    public Map<String, Product> loadAll(Collection<String> productIds) {
+        Set<String> ids = distinctIds(productIds);
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Map<String, Product> productsById = new HashMap<>(ids.size() * 2);
+        productRepository.findAllById(ids).forEach(product -> productsById.put(product.getId(), product));
+        return productsById;
+    }
+    
+    /**
+     * Returns the products with the given ids in the order the ids were given, skipping ids
+     * that don't match a product.
+     */
+    public List<Product> loadOrdered(Collection<String> productIds) {
+        Map<String, Product> productsById = loadAll(productIds);
+        return distinctIds(productIds).stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    private static Set<String> distinctIds(Collection<String> productIds) {
+        if (productIds == null) {
+            return Collections.emptySet();
+        }
+        return productIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
@@ -0,0 +1,288 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.request.ProductQueryRequest;
+import com.ecommerce.dto.response.ProductQueryResponse;
+import com.ecommerce.dto.response.ProductResponse;
+import com.ecommerce.model.Product;
+import com.ecommerce.search.ProductFacetEngine;
+import com.ecommerce.search.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Combined catalog query: all filters go into one $match that the active/category/price
+ * indexes can serve, and a single $facet stage returns the page, the total and the facet
+ * counts over the filtered products in the same round trip. When the in-memory
+ * {@link ProductFacetEngine} is enabled and built, it answers instead and MongoDB only
+ * loads the products on the page.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductQueryService {
+    
+    private static final int MAX_PAGE_SIZE = 60;
+    private static final int MAX_TEXT_MATCHES = 1000;
+    private static final int MAX_BRAND_FACETS = 20;
+    private static final List<Integer> RATING_BOUNDARIES = List.of(0, 1, 2, 3, 4, 6);
+    private static final String OPEN_BUCKET = "open";
+    
+    private final MongoTemplate mongoTemplate;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetEngine productFacetEngine;
+    private final ProductBatchLoader productBatchLoader;
+    
+    public ProductQueryResponse query(ProductQueryRequest request) {
+        int page = Math.max(0, request.getPage());
+        int size = Math.min(Math.max(1, request.getSize()), MAX_PAGE_SIZE);
+        
+        List<String> rankedIds = null;
+        if (hasText(request.getQ())) {
+            Optional<ProductSearchIndex.SearchHits> hits = productSearchIndex.search(request.getQ(), 0, MAX_TEXT_MATCHES);
+            if (hits.isPresent()) {
+                rankedIds = hits.get().productIds();
+                if (rankedIds.isEmpty()) {
+                    return emptyResponse(page, size);
+                }
+            }
+        }
+        
+        // The facet engine can't evaluate the regex fallback used while the search index builds
+        if (!hasText(request.getQ()) || rankedIds != null) {
+            Optional<ProductFacetEngine.FacetResult> inMemory =
+                    productFacetEngine.query(request, rankedIds, page * size, size);
+            if (inMemory.isPresent()) {
+                List<ProductResponse> content = productBatchLoader.loadOrdered(inMemory.get().pageIds()).stream()
+                        .map(ProductResponse::fromProduct)
+                        .toList();
+                return buildResponse(content, page, size, inMemory.get());
+            }
+        }
+        return queryMongo(request, rankedIds, page, size);
+    }
+    
+    private ProductQueryResponse queryMongo(ProductQueryRequest request, List<String> rankedIds, int page, int size) {
+        Criteria criteria = Criteria.where("active").is(true);
+        if (rankedIds != null) {
+            criteria.and("_id").in(rankedIds);
+        } else if (hasText(request.getQ())) {
+            criteria.and("name").regex(Pattern.quote(request.getQ().trim()), "i");
+        }
+        if (hasText(request.getCategoryId())) {
+            criteria.and("categoryId").is(request.getCategoryId());
+        }
+        if (request.getBrands() != null && !request.getBrands().isEmpty()) {
+            criteria.and("brand").in(request.getBrands());
+        }
+        if (request.getTags() != null && !request.getTags().isEmpty()) {
+            criteria.and("tags").in(request.getTags());
+        }
+        if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+            Criteria price = criteria.and("effectivePrice");
+            if (request.getMinPrice() != null) {
+                price.gte(new Decimal128(request.getMinPrice()));
+            }
+            if (request.getMaxPrice() != null) {
+                price.lte(new Decimal128(request.getMaxPrice()));
+            }
+        }
+        if (request.getMinRating() != null) {
+            criteria.and("averageRating").gte(request.getMinRating());
+        }
+        if (Boolean.TRUE.equals(request.getInStock())) {
+            criteria.and("stockQuantity").gt(0);
+        }
+        
+        List<AggregationOperation> results = new ArrayList<>();
+        if (rankedIds != null && isRelevanceSort(request)) {
+            results.add(rankStage(rankedIds));
+            results.add(Aggregation.sort(Sort.by(Sort.Order.asc("_rank"), Sort.Order.asc("_id"))));
+        } else {
+            results.add(Aggregation.sort(sort(request)));
+        }
+        results.add(Aggregation.skip((long) page * size));
+        results.add(Aggregation.limit(size));
+        
+        TypedAggregation<Product> aggregation = Aggregation.newAggregation(Product.class,
+                Aggregation.match(criteria),
+                Aggregation.facet(results.toArray(new AggregationOperation[0])).as("results")
+                        .and(Aggregation.count().as("count")).as("total")
+                        .and(Aggregation.group("brand").count().as("count"),
+                                Aggregation.match(Criteria.where("_id").ne(null)),
+                                Aggregation.sort(Sort.by(Sort.Order.desc("count"), Sort.Order.asc("_id"))),
+                                Aggregation.limit(MAX_BRAND_FACETS)).as("brands")
+                        .and(Aggregation.group("categoryId", "categoryName").count().as("count")).as("categories")
+                        .and(bucketStage("effectivePrice", ProductFacetEngine.PRICE_BOUNDARIES)).as("prices")
+                        .and(bucketStage("averageRating", RATING_BOUNDARIES)).as("ratings"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        
+        Document facets = mongoTemplate.aggregate(aggregation, Document.class).getUniqueMappedResult();
+        if (facets == null) {
+            return emptyResponse(page, size);
+        }
+        
+        List<ProductResponse> content = facets.getList("results", Document.class).stream()
+                .map(doc -> mongoTemplate.getConverter().read(Product.class, doc))
+                .map(ProductResponse::fromProduct)
+                .toList();
+        return buildResponse(content, page, size, toFacetResult(facets));
+    }
+    
+    private static AggregationOperation bucketStage(String field, List<Integer> boundaries) {
+        return context -> new Document("$bucket", new Document()
+                .append("groupBy", "$" + field)
+                .append("boundaries", boundaries)
+                .append("default", OPEN_BUCKET)
+                .append("output", new Document("count", new Document("$sum", 1))));
+    }
+    
+    // Orders text matches by their position in the search index's ranking
+    private static AggregationOperation rankStage(List<String> rankedIds) {
+        List<Object> ids = rankedIds.stream()
+                .map(id -> ObjectId.isValid(id) ? (Object) new ObjectId(id) : id)
+                .toList();
+        return context -> new Document("$addFields",
+                new Document("_rank", new Document("$indexOfArray", List.of(ids, "$_id"))));
+    }
+    
+    private static Sort sort(ProductQueryRequest request) {
+        String field = switch (request.getSortBy() == null ? "createdAt" : request.getSortBy()) {
+            case "price" -> "effectivePrice";
+            case "averageRating" -> "averageRating";
+            case "name" -> "name";
+            default -> "createdAt";
+        };
+        Sort.Direction direction = "asc".equalsIgnoreCase(request.getSortDir()) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(new Sort.Order(direction, field), new Sort.Order(direction, "_id"));
+    }
+    
+    private static boolean isRelevanceSort(ProductQueryRequest request) {
+        return request.getSortBy() == null || "relevance".equals(request.getSortBy());
+    }
+    
+    private static ProductFacetEngine.FacetResult toFacetResult(Document facets) {
+        long total = facets.getList("total", Document.class).stream()
+                .findFirst()
+                .map(ProductQueryService::count)
+                .orElse(0L);
+        
+        Map<String, Long> brands = new HashMap<>();
+        for (Document bucket : facets.getList("brands", Document.class)) {
+            brands.put(bucket.getString("_id"), count(bucket));
+        }
+        
+        List<ProductFacetEngine.CategoryCount> categories = new ArrayList<>();
+        for (Document bucket : facets.getList("categories", Document.class)) {
+            Document id = bucket.get("_id", Document.class);
+            if (id.getString("categoryId") != null) {
+                categories.add(new ProductFacetEngine.CategoryCount(
+                        id.getString("categoryId"), id.getString("categoryName"), count(bucket)));
+            }
+        }
+        
+        List<Integer> priceBoundaries = ProductFacetEngine.PRICE_BOUNDARIES;
+        long[] priceCounts = new long[priceBoundaries.size()];
+        for (Document bucket : facets.getList("prices", Document.class)) {
+            int index = bucket.get("_id") instanceof Number lower
+                    ? priceBoundaries.indexOf(lower.intValue())
+                    : priceBoundaries.size() - 1;
+            priceCounts[index] += count(bucket);
+        }
+        
+        long[] ratingCounts = new long[ProductFacetEngine.RATING_BUCKETS];
+        for (Document bucket : facets.getList("ratings", Document.class)) {
+            if (bucket.get("_id") instanceof Number lower) {
+                ratingCounts[RATING_BOUNDARIES.indexOf(lower.intValue())] += count(bucket);
+            }
+        }
+        
+        return new ProductFacetEngine.FacetResult(List.of(), total, brands, categories, priceCounts, ratingCounts);
+    }
+    
+    private static ProductQueryResponse buildResponse(List<ProductResponse> content, int page, int size,
+                                                      ProductFacetEngine.FacetResult result) {
+        List<ProductQueryResponse.FacetCount> brands = result.brands().entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_BRAND_FACETS)
+                .map(entry -> new ProductQueryResponse.FacetCount(entry.getKey(), entry.getKey(), entry.getValue()))
+                .toList();
+        
+        List<ProductQueryResponse.FacetCount> categories = result.categories().stream()
+                .sorted(Comparator.comparingLong(ProductFacetEngine.CategoryCount::count).reversed())
+                .map(category -> new ProductQueryResponse.FacetCount(
+                        category.categoryId(), category.categoryName(), category.count()))
+                .toList();
+        
+        List<Integer> priceBoundaries = ProductFacetEngine.PRICE_BOUNDARIES;
+        List<ProductQueryResponse.PriceBucket> prices = new ArrayList<>();
+        for (int i = 0; i < priceBoundaries.size(); i++) {
+            if (result.priceCounts()[i] > 0) {
+                BigDecimal upper = i + 1 < priceBoundaries.size() ? BigDecimal.valueOf(priceBoundaries.get(i + 1)) : null;
+                prices.add(new ProductQueryResponse.PriceBucket(
+                        BigDecimal.valueOf(priceBoundaries.get(i)), upper, result.priceCounts()[i]));
+            }
+        }
+        
+        List<ProductQueryResponse.FacetCount> ratings = new ArrayList<>();
+        long atLeast = 0;
+        for (int rating = result.ratingCounts().length - 1; rating >= 1; rating--) {
+            atLeast += result.ratingCounts()[rating];
+            ratings.add(new ProductQueryResponse.FacetCount(String.valueOf(rating), rating + " & up", atLeast));
+        }
+        
+        return ProductQueryResponse.builder()
+                .content(content)
+                .page(page)
+                .size(size)
+                .totalElements(result.total())
+                .totalPages((int) ((result.total() + size - 1) / size))
+                .facets(ProductQueryResponse.Facets.builder()
+                        .brands(brands)
+                        .categories(categories)
+                        .prices(prices)
+                        .ratings(ratings)
+                        .build())
+                .build();
+    }
+    
+    private static long count(Document bucket) {
+        return ((Number) bucket.get("count")).longValue();
+    }
+    
+    private static ProductQueryResponse emptyResponse(int page, int size) {
+        return ProductQueryResponse.builder()
+                .content(Collections.emptyList())
+                .page(page)
+                .size(size)
+                .facets(ProductQueryResponse.Facets.builder()
+                        .brands(Collections.emptyList())
+                        .categories(Collections.emptyList())
+                        .prices(Collections.emptyList())
+                        .ratings(Collections.emptyList())
+                        .build())
+                .build();
+    }
+    
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
@@ -0,0 +1,219 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Product;
+import com.ecommerce.model.Review;
+import com.ecommerce.search.ProductFacetEngine;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each product's review count, rating sum, star histogram and average rating in step
+ * with its reviews. Every review change applies its delta to the product in one atomic
+ * pipeline update, so the cost doesn't grow with the number of reviews; a periodic
+ * reconciliation recomputes the aggregates from the reviews and repairs any drift it sees
+ * twice in a row.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductRatingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductRatingService.class);
+    private static final int STARS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductFacetEngine productFacetEngine;
+
+    // Drift seen by the previous reconciliation, by product id; only used by the synchronized reconcile
+    private Map<String, Drift> previousDrift = new HashMap<>();
+
+    public void reviewAdded(String productId, int rating) {
+        applyDelta(productId, 1, rating, histogramDelta(0, rating));
+    }
+
+    public void reviewChanged(String productId, int previousRating, int rating) {
+        if (previousRating != rating) {
+            applyDelta(productId, 0, rating - previousRating, histogramDelta(previousRating, rating));
+        }
+    }
+
+    public void reviewRemoved(String productId, int rating) {
+        applyDelta(productId, -1, -rating, histogramDelta(rating, 0));
+    }
+
+    private static List<Integer> histogramDelta(int removedRating, int addedRating) {
+        List<Integer> delta = new ArrayList<>(List.of(0, 0, 0, 0, 0));
+        if (removedRating >= 1 && removedRating <= STARS) {
+            delta.set(removedRating - 1, delta.get(removedRating - 1) - 1);
+        }
+        if (addedRating >= 1 && addedRating <= STARS) {
+            delta.set(addedRating - 1, delta.get(addedRating - 1) + 1);
+        }
+        return delta;
+    }
+
+    /**
+     * Adds the deltas and recomputes the average from the new sum and count in a single write.
+     * Products rated before the sum and histogram were stored get their sum seeded from the
+     * stored average and count; their histogram starts empty until the next reconciliation.
+     */
+    private void applyDelta(String productId, int countDelta, int sumDelta, List<Integer> histogramDelta) {
+        Document previousCount = new Document("$ifNull", List.of("$reviewCount", 0));
+        Document previousSum = new Document("$ifNull", List.of("$ratingSum",
+                new Document("$toLong", new Document("$round", List.of(
+                        new Document("$multiply", List.of(new Document("$ifNull", List.of("$averageRating", 0)), previousCount)),
+                        0)))));
+
+        AggregationOperation addDeltas = context -> new Document("$set", new Document()
+                .append("reviewCount", new Document("$add", List.of(previousCount, countDelta)))
+                .append("ratingSum", new Document("$add", List.of(previousSum, (long) sumDelta)))
+                .append("ratingHistogram", new Document("$map", new Document()
+                        .append("input", List.of(0, 1, 2, 3, 4))
+                        .append("as", "star")
+                        .append("in", new Document("$add", List.of(
+                                new Document("$ifNull", List.of(new Document("$arrayElemAt", List.of("$ratingHistogram", "$$star")), 0)),
+                                new Document("$arrayElemAt", List.of(histogramDelta, "$$star"))))))));
+        AggregationOperation average = context -> new Document("$set", new Document("averageRating",
+                new Document("$cond", List.of(
+                        new Document("$gt", List.of("$reviewCount", 0)),
+                        new Document("$divide", List.of("$ratingSum", "$reviewCount")),
+                        0.0))));
+
+        Product product = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(productId)),
+                AggregationUpdate.from(List.of(addDeltas, average)),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (product != null) {
+            // Pipeline updates bypass the mapping events the listener relies on
+            productFacetEngine.index(product);
+        }
+    }
+
+    // ========== Reconciliation ==========
+
+    /**
+     * Recomputes the aggregates of every product from its reviews and overwrites the ones
+     * that drifted, e.g. from a failed write between saving a review and applying its delta.
+     * <p>
+     * The stored aggregates are read before the reviews are summed and a repair is a
+     * compare-and-set on them, so a delta applied while this runs is never rolled back. A
+     * review saved just before the stored values were read can still have its delta in
+     * flight, though, so a drift is only repaired once two consecutive runs saw the same
+     * stored and recomputed values.
+     */
+    @Scheduled(initialDelayString = "${catalog.ratings.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${catalog.ratings.reconcile-interval-ms:3600000}")
+    public synchronized int reconcile() {
+        Query storedQuery = new Query();
+        storedQuery.fields().include("_id").include("reviewCount").include("ratingSum").include("ratingHistogram");
+        Map<String, Document> stored = new HashMap<>();
+        for (Document product : mongoTemplate.find(storedQuery, Document.class, mongoTemplate.getCollectionName(Product.class))) {
+            stored.put(String.valueOf(product.get("_id")), product);
+        }
+
+        GroupOperation group = Aggregation.group("productId")
+                .count().as("count")
+                .sum("rating").as("sum");
+        for (int star = 1; star <= STARS; star++) {
+            group = group.sum(ConditionalOperators
+                    .when(ComparisonOperators.valueOf("rating").equalToValue(star))
+                    .then(1).otherwise(0)).as("star" + star);
+        }
+        Aggregation aggregation = Aggregation.newAggregation(group).withOptions(
+                Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        Map<String, Aggregates> actual = new HashMap<>();
+        for (Document totals : mongoTemplate.aggregate(aggregation, Review.class, Document.class)) {
+            String productId = totals.getString("_id");
+            if (productId == null) {
+                continue;
+            }
+            List<Integer> histogram = new ArrayList<>(STARS);
+            for (int star = 1; star <= STARS; star++) {
+                histogram.add(((Number) totals.get("star" + star)).intValue());
+            }
+            actual.put(productId, new Aggregates(((Number) totals.get("count")).intValue(),
+                    ((Number) totals.get("sum")).longValue(), histogram));
+        }
+
+        Map<String, Drift> drifted = new HashMap<>();
+        int repaired = 0;
+        for (Map.Entry<String, Document> entry : stored.entrySet()) {
+            String productId = entry.getKey();
+            Document current = entry.getValue();
+            Aggregates expected = actual.getOrDefault(productId, Aggregates.NONE);
+            // Never-reviewed products that don't track aggregates yet are fine as they are
+            if (expected.count() == 0 && !current.containsKey("ratingHistogram")
+                    && ((Number) current.get("reviewCount", 0)).intValue() == 0) {
+                continue;
+            }
+            if (expected.matches(current)) {
+                continue;
+            }
+
+            Drift drift = new Drift(current, expected);
+            if (!drift.equals(previousDrift.get(productId))) {
+                drifted.put(productId, drift);
+                continue;
+            }
+            Query unchanged = Query.query(Criteria.where("_id").is(current.get("_id"))
+                    .and("reviewCount").is(current.get("reviewCount"))
+                    .and("ratingSum").is(current.get("ratingSum"))
+                    .and("ratingHistogram").is(current.get("ratingHistogram")));
+            Product product = mongoTemplate.findAndModify(unchanged,
+                    aggregates(expected.count(), expected.sum(), expected.histogram()),
+                    FindAndModifyOptions.options().returnNew(true), Product.class);
+            if (product != null) {
+                productFacetEngine.index(product);
+                repaired++;
+            }
+        }
+        previousDrift = drifted;
+
+        if (repaired > 0 || !drifted.isEmpty()) {
+            log.info("Repaired rating aggregates of {} products; {} more drifted and are rechecked next run",
+                    repaired, drifted.size());
+        }
+        return repaired;
+    }
+
+    private record Aggregates(int count, long sum, List<Integer> histogram) {
+        static final Aggregates NONE = new Aggregates(0, 0, List.of(0, 0, 0, 0, 0));
+
+        boolean matches(Document stored) {
+            return stored.get("reviewCount") instanceof Number storedCount && storedCount.intValue() == count
+                    && stored.get("ratingSum") instanceof Number storedSum && storedSum.longValue() == sum
+                    && histogram.equals(stored.get("ratingHistogram"));
+        }
+    }
+
+    // The stored values a repair was based on, plus what the reviews added up to
+    private record Drift(Document stored, Aggregates expected) {
+    }
+
+    private static Update aggregates(long count, long sum, List<Integer> histogram) {
+        return new Update()
+                .set("reviewCount", (int) count)
+                .set("ratingSum", sum)
+                .set("ratingHistogram", histogram)
+                .set("averageRating", count > 0 ? (double) sum / count : 0.0);
+    }
+}
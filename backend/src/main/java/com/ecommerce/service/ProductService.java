@@ -1,18 +1,36 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.request.ProductRequest;
+import com.ecommerce.dto.response.CursorPageResponse;
 import com.ecommerce.dto.response.ProductResponse;
+import com.ecommerce.dto.response.SuggestionResponse;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.Category;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.CategoryRepository;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.search.ProductFacetEngine;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.ProductSuggester;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.Decimal128;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -20,12 +38,29 @@ public class ProductService {
     
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final DashboardService dashboardService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final ProductBatchLoader productBatchLoader;
+    private final MeterRegistry meterRegistry;
+    private final KeysetPager keysetPager;
+    private final MongoTemplate mongoTemplate;
+    private final ProductFacetEngine productFacetEngine;
     
     public Page<ProductResponse> getAllProducts(Pageable pageable) {
         return productRepository.findByActiveTrue(pageable)
                 .map(ProductResponse::fromProduct);
     }
     
+    public CursorPageResponse<ProductResponse> getAllProducts(String cursor, int size, ProductSort sort,
+                                                              boolean withTotal) {
+        Query filter = new Query(Criteria.where("active").is(true));
+        return keysetPager.page(filter, Product.class, sort.field(), sort.direction(), cursor, size,
+                        sort::sortValue, Product::getId,
+                        withTotal ? KeysetPager.Total.EXACT : KeysetPager.Total.NONE)
+                .map(ProductResponse::fromProduct);
+    }
+    
     public ProductResponse getProductById(String productId) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
@@ -43,12 +78,36 @@ public class ProductService {
     }
     
     public Page<ProductResponse> searchProducts(String query, Pageable pageable) {
-        return productRepository.searchByName(query, pageable)
-                .map(ProductResponse::fromProduct);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<ProductSearchIndex.SearchHits> hits =
+                productSearchIndex.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        
+        Page<Product> products;
+        if (hits.isPresent()) {
+            List<Product> content = productBatchLoader.loadOrdered(hits.get().productIds()).stream()
+                    .filter(Product::isActive)
+                    .toList();
+            products = new PageImpl<>(content, pageable, hits.get().total());
+        } else {
+            // Index still building after startup: match the name directly
+            products = productRepository.searchByName(Pattern.quote(query), pageable);
+        }
+        
+        sample.stop(Timer.builder("products.search")
+                .tag("source", hits.isPresent() ? "index" : "regex")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry));
+        return products.map(ProductResponse::fromProduct);
+    }
+    
+    public List<SuggestionResponse> suggest(String query, int limit) {
+        return productSuggester.suggest(query, limit).stream()
+                .map(SuggestionResponse::fromSuggestion)
+                .toList();
     }
     
     public Page<ProductResponse> filterByPrice(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return productRepository.findByPriceRange(minPrice, maxPrice, pageable)
+        return productRepository.findByPriceRange(new Decimal128(minPrice), new Decimal128(maxPrice), pageable)
                 .map(ProductResponse::fromProduct);
     }
     
@@ -86,70 +145,114 @@ public class ProductService {
                 .build();
         
         product = productRepository.save(product);
+        dashboardService.recordProductCreated(product);
         return ProductResponse.fromProduct(product);
     }
     
+    /**
+     * Applies an admin edit as a {@code $set} of the edited fields only, so it can't undo a
+     * concurrent stock change or rating update with the values it read. The update is
+     * conditional on the stock, status and prices it was computed from, and computed again
+     * if any of them changed meanwhile.
+     */
     public ProductResponse updateProduct(String productId, ProductRequest request) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        
-        if (request.getCategoryId() != null && !request.getCategoryId().equals(product.getCategoryId())) {
-            Category category = categoryRepository.findById(request.getCategoryId())
+        Category category = null;
+        if (request.getCategoryId() != null) {
+            category = categoryRepository.findById(request.getCategoryId())
                     .orElseThrow(() -> new ResourceNotFoundException("Category", "id", request.getCategoryId()));
-            product.setCategoryId(category.getId());
-            product.setCategoryName(category.getName());
         }
         
-        if (request.getName() != null) product.setName(request.getName());
-        if (request.getDescription() != null) product.setDescription(request.getDescription());
-        if (request.getBrand() != null) product.setBrand(request.getBrand());
-        if (request.getPrice() != null) product.setPrice(request.getPrice());
-        if (request.getDiscountPrice() != null) product.setDiscountPrice(request.getDiscountPrice());
-        product.setDiscountPercentage(request.getDiscountPercentage());
-        if (request.getImages() != null) product.setImages(request.getImages());
-        product.setStockQuantity(request.getStockQuantity());
-        product.setActive(request.isActive());
-        product.setFeatured(request.isFeatured());
-        if (request.getTags() != null) product.setTags(request.getTags());
-        
-        // Update product specs if any spec field is provided in the request
-        if (request.getWeight() != null || request.getDimensions() != null || 
-            request.getColor() != null || request.getMaterial() != null || 
-            request.getWarranty() != null) {
+        while (true) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
             
-            // Get existing specs or create new if null
-            Product.ProductSpecs specs = product.getSpecs();
-            if (specs == null) {
-                specs = new Product.ProductSpecs();
+            Update update = new Update().set("updatedAt", LocalDateTime.now());
+            if (category != null) {
+                update.set("categoryId", category.getId());
+                update.set("categoryName", category.getName());
             }
+            if (request.getName() != null) update.set("name", request.getName());
+            if (request.getDescription() != null) update.set("description", request.getDescription());
+            if (request.getBrand() != null) update.set("brand", request.getBrand());
+            if (request.getPrice() != null) update.set("price", decimal(request.getPrice()));
+            if (request.getDiscountPrice() != null) update.set("discountPrice", decimal(request.getDiscountPrice()));
+            if (request.getPrice() != null || request.getDiscountPrice() != null) {
+                BigDecimal price = request.getPrice() != null ? request.getPrice() : product.getPrice();
+                BigDecimal discountPrice = request.getDiscountPrice() != null
+                        ? request.getDiscountPrice() : product.getDiscountPrice();
+                update.set("effectivePrice", decimal(discountPrice != null ? discountPrice : price));
+            }
+            update.set("discountPercentage", request.getDiscountPercentage());
+            if (request.getImages() != null) update.set("images", request.getImages());
+            update.set("stockQuantity", request.getStockQuantity());
+            update.set("active", request.isActive());
+            update.set("featured", request.isFeatured());
+            if (request.getTags() != null) update.set("tags", request.getTags());
+            setSpecs(update, product.getSpecs(), request);
             
-            // Update only the fields that are provided in the request
-            if (request.getWeight() != null) specs.setWeight(request.getWeight());
-            if (request.getDimensions() != null) specs.setDimensions(request.getDimensions());
-            if (request.getColor() != null) specs.setColor(request.getColor());
-            if (request.getMaterial() != null) specs.setMaterial(request.getMaterial());
-            if (request.getWarranty() != null) specs.setWarranty(request.getWarranty());
-            
-            product.setSpecs(specs);
+            Product updated = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(productId)
+                            .and("stockQuantity").is(product.getStockQuantity())
+                            .and("active").is(product.isActive())
+                            .and("price").is(decimal(product.getPrice()))
+                            .and("discountPrice").is(decimal(product.getDiscountPrice()))),
+                    update,
+                    FindAndModifyOptions.options().returnNew(true),
+                    Product.class);
+            if (updated != null) {
+                productChanged(updated);
+                dashboardService.recordProductChange(product.isActive(), product.getStockQuantity(), updated);
+                return ProductResponse.fromProduct(updated);
+            }
         }
-        
-        product = productRepository.save(product);
-        return ProductResponse.fromProduct(product);
+    }
+    
+    // Only the spec fields given in the request are changed
+    private static void setSpecs(Update update, Product.ProductSpecs current, ProductRequest request) {
+        if (current == null) {
+            if (request.getWeight() != null || request.getDimensions() != null || request.getColor() != null
+                    || request.getMaterial() != null || request.getWarranty() != null) {
+                update.set("specs", Product.ProductSpecs.builder()
+                        .weight(request.getWeight())
+                        .dimensions(request.getDimensions())
+                        .color(request.getColor())
+                        .material(request.getMaterial())
+                        .warranty(request.getWarranty())
+                        .build());
+            }
+            return;
+        }
+        if (request.getWeight() != null) update.set("specs.weight", request.getWeight());
+        if (request.getDimensions() != null) update.set("specs.dimensions", request.getDimensions());
+        if (request.getColor() != null) update.set("specs.color", request.getColor());
+        if (request.getMaterial() != null) update.set("specs.material", request.getMaterial());
+        if (request.getWarranty() != null) update.set("specs.warranty", request.getWarranty());
     }
     
     public void deleteProduct(String productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        product.setActive(false);
-        productRepository.save(product);
+        Product previous = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(productId)),
+                new Update().set("active", false).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(false),
+                Product.class);
+        if (previous == null) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        boolean wasActive = previous.isActive();
+        previous.setActive(false);
+        productChanged(previous);
+        dashboardService.recordProductChange(wasActive, previous.getStockQuantity(), previous);
     }
     
-    public void updateProductRating(String productId, double newAverageRating, int reviewCount) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        product.setAverageRating(newAverageRating);
-        product.setReviewCount(reviewCount);
-        productRepository.save(product);
+    // Targeted updates skip the save events that keep the in-memory indexes current
+    private void productChanged(Product product) {
+        productSearchIndex.index(product);
+        productFacetEngine.index(product);
+    }
+    
+    // Prices are stored as Decimal128; the update mapper wouldn't convert them on its own
+    private static Decimal128 decimal(BigDecimal value) {
+        return value == null ? null : new Decimal128(value);
     }
     
     public Page<ProductResponse> getAllProductsAdmin(Pageable pageable) {
@@ -0,0 +1,93 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.model.Product;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The orders the catalog listing can be sorted in. Each one is served by a compound index on
+ * {@code (active, field, _id)}, so listing never falls back to an in-memory sort; sorting on
+ * anything else is rejected rather than passed through to MongoDB.
+ */
+public enum ProductSort {
+    NEWEST("createdAt", Sort.Direction.DESC, Product::getCreatedAt),
+    PRICE_ASC("effectivePrice", Sort.Direction.ASC, Product::getEffectivePrice),
+    PRICE_DESC("effectivePrice", Sort.Direction.DESC, Product::getEffectivePrice),
+    RATING("averageRating", Sort.Direction.DESC, Product::getAverageRating),
+    POPULARITY("reviewCount", Sort.Direction.DESC, Product::getReviewCount),
+    DISCOUNT("discountPercentage", Sort.Direction.DESC, Product::getDiscountPercentage);
+    
+    private final String field;
+    private final Sort.Direction direction;
+    private final Function<Product, Object> sortValue;
+    
+    ProductSort(String field, Sort.Direction direction, Function<Product, Object> sortValue) {
+        this.field = field;
+        this.direction = direction;
+        this.sortValue = sortValue;
+    }
+    
+    /**
+     * Resolves a sort from request parameters: either a key such as {@code newest} or
+     * {@code price_asc}, or the field and direction pairs clients sent before the keys existed
+     * ({@code sortBy=price&sortDir=asc}).
+     */
+    public static ProductSort from(String sortBy, String sortDir) {
+        String key = sortBy == null ? "" : sortBy.trim();
+        boolean ascending = "asc".equalsIgnoreCase(sortDir);
+        ProductSort sort = switch (key) {
+            case "createdAt" -> ascending ? null : NEWEST;
+            case "price" -> ascending ? PRICE_ASC : PRICE_DESC;
+            case "averageRating" -> ascending ? null : RATING;
+            case "reviewCount" -> ascending ? null : POPULARITY;
+            case "discountPercentage" -> ascending ? null : DISCOUNT;
+            default -> Arrays.stream(values())
+                    .filter(value -> value.key().equalsIgnoreCase(key))
+                    .findFirst()
+                    .orElse(null);
+        };
+        if (sort == null) {
+            throw new BadRequestException("Unsupported sort: " + sortBy + " " + sortDir + ". Supported sorts: "
+                    + Arrays.stream(values()).map(ProductSort::key).collect(Collectors.joining(", ")));
+        }
+        return sort;
+    }
+    
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+    
+    public String field() {
+        return field;
+    }
+    
+    public Sort.Direction direction() {
+        return direction;
+    }
+    
+    public Object sortValue(Product product) {
+        return sortValue.apply(product);
+    }
+    
+    public Sort toSort() {
+        return Sort.by(new Sort.Order(direction, field), new Sort.Order(direction, "_id"));
+    }
+    
+    /**
+     * The index serving this sort over active products. Ascending and descending orders of the
+     * same field share one index, walked in opposite directions.
+     */
+    public Index index() {
+        return new Index()
+                .on("active", Sort.Direction.ASC)
+                .on(field, Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("active_" + field + "_id");
+    }
+}
@@ -0,0 +1,165 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Purchase;
+import com.ecommerce.model.User;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maintains the {@link Purchase} index from order status changes: an order's products are
+ * added when it is delivered and taken out again when it leaves DELIVERED (e.g. refunded).
+ */
+@Service
+@RequiredArgsConstructor
+public class PurchaseService {
+    
+    private static final Logger log = LoggerFactory.getLogger(PurchaseService.class);
+    
+    private final MongoTemplate mongoTemplate;
+    private final UserService userService;
+    private final DemoModeService demoModeService;
+    
+    public boolean hasPurchased(String userId, String productId) {
+        // Documents are deleted once empty; the orderIds check covers the moment in between
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(Purchase.idFor(userId, productId))
+                .and("orderIds.0").exists(true)), Purchase.class);
+    }
+    
+    /**
+     * Whether the signed-in shopper has received the product; false for anonymous requests.
+     */
+    public boolean hasCurrentUserPurchased(String productId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return false;
+        }
+        User user = userService.getCurrentUser();
+        if (demoModeService.isDemoUserId(user.getId())) {
+            return demoModeService.getOrders(user).stream()
+                    .filter(order -> order.getStatus() == Order.OrderStatus.DELIVERED)
+                    .flatMap(order -> order.getItems().stream())
+                    .anyMatch(item -> productId.equals(item.getProductId()));
+        }
+        return hasPurchased(user.getId(), productId);
+    }
+    
+    /**
+     * Applies an order status change: entering DELIVERED records the order's products, leaving
+     * it removes them.
+     */
+    public void recordStatusChange(Order order, Order.OrderStatus previousStatus) {
+        boolean delivered = order.getStatus() == Order.OrderStatus.DELIVERED;
+        boolean wasDelivered = previousStatus == Order.OrderStatus.DELIVERED;
+        if (delivered && !wasDelivered) {
+            recordDelivered(order);
+        } else if (wasDelivered && !delivered) {
+            recordReversed(order);
+        }
+    }
+    
+    public void recordDelivered(Order order) {
+        Set<String> productIds = productIds(order);
+        if (productIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Purchase.class);
+        for (String productId : productIds) {
+            bulk.upsert(Query.query(Criteria.where("_id").is(Purchase.idFor(order.getUserId(), productId))),
+                    new Update()
+                            .addToSet("orderIds", order.getId())
+                            .set("updatedAt", now)
+                            .setOnInsert("userId", order.getUserId())
+                            .setOnInsert("productId", productId));
+        }
+        bulk.execute();
+    }
+    
+    public void recordReversed(Order order) {
+        Set<String> productIds = productIds(order);
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = productIds.stream()
+                .map(productId -> Purchase.idFor(order.getUserId(), productId))
+                .toList();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                new Update().pull("orderIds", order.getId()).set("updatedAt", LocalDateTime.now()),
+                Purchase.class);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids).and("orderIds").size(0)), Purchase.class);
+    }
+    
+    private static Set<String> productIds(Order order) {
+        Set<String> productIds = new LinkedHashSet<>();
+        if (order.getItems() != null) {
+            for (Order.OrderItem item : order.getItems()) {
+                if (item.getProductId() != null) {
+                    productIds.add(item.getProductId());
+                }
+            }
+        }
+        return productIds;
+    }
+    
+    // ========== Backfill ==========
+    
+    /**
+     * Builds the index from the delivered orders on the server with $merge when the purchases
+     * collection is still empty, i.e. on the first start after it was introduced.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void backfill() {
+        try {
+            if (mongoTemplate.estimatedCount(Purchase.class) > 0) {
+                return;
+            }
+            String collection = mongoTemplate.getCollectionName(Purchase.class);
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class)).aggregate(List.of(
+                    new Document("$match", new Document("status", Order.OrderStatus.DELIVERED.name())),
+                    new Document("$unwind", "$items"),
+                    new Document("$match", new Document("userId", new Document("$type", "string"))
+                            .append("items.productId", new Document("$type", "string"))),
+                    new Document("$group", new Document()
+                            .append("_id", new Document("userId", "$userId").append("productId", "$items.productId"))
+                            .append("orderIds", new Document("$addToSet", new Document("$toString", "$_id")))),
+                    new Document("$project", new Document()
+                            .append("_id", new Document("$concat", List.of("$_id.userId", ":", "$_id.productId")))
+                            .append("userId", "$_id.userId")
+                            .append("productId", "$_id.productId")
+                            .append("orderIds", 1)
+                            .append("updatedAt", "$$NOW")),
+                    new Document("$merge", new Document()
+                            .append("into", collection)
+                            .append("whenMatched", "merge")
+                            .append("whenNotMatched", "insert"))))
+                    .allowDiskUse(true)
+                    .toCollection();
+            long count = mongoTemplate.estimatedCount(Purchase.class);
+            if (count > 0) {
+                log.info("Backfilled {} purchases from delivered orders", count);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not backfill purchases: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.UnauthorizedException;
+import com.ecommerce.model.RefreshToken;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues and rotates opaque refresh tokens. Each refresh consumes the presented token and
+ * issues a new one in the same family, so a replayed token is detected and ends the family.
+ */
+@Service
+public class RefreshTokenService {
+    
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+    
+    private static final int TOKEN_BYTES = 32;
+    
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final DemoModeService demoModeService;
+    private final long refreshExpirationMs;
+    private final SecureRandom random = new SecureRandom();
+    
+    public RefreshTokenService(MongoTemplate mongoTemplate,
+                               UserRepository userRepository,
+                               DemoModeService demoModeService,
+                               @Value("${jwt.refresh-expiration:1209600000}") long refreshExpirationMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.userRepository = userRepository;
+        this.demoModeService = demoModeService;
+        this.refreshExpirationMs = refreshExpirationMs;
+    }
+    
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+    
+    /**
+     * Marks the token used and returns the user it was issued to together with its
+     * replacement. Presenting a token that was already used revokes its whole family.
+     */
+    public Rotation rotate(String rawToken) {
+        String tokenHash = hash(rawToken);
+        LocalDateTime now = LocalDateTime.now();
+        
+        RefreshToken token = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("tokenHash").is(tokenHash).and("usedAt").is(null)),
+                new Update().set("usedAt", now),
+                FindAndModifyOptions.options().returnNew(false),
+                RefreshToken.class);
+        
+        if (token == null) {
+            RefreshToken used = mongoTemplate.findOne(
+                    Query.query(Criteria.where("tokenHash").is(tokenHash)), RefreshToken.class);
+            if (used != null) {
+                log.warn("Refresh token reuse detected for user {}, revoking token family", used.getUserId());
+                revokeFamily(used.getFamilyId());
+                throw new UnauthorizedException("Refresh token reuse detected");
+            }
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        if (token.getExpiresAt() != null && token.getExpiresAt().isBefore(now)) {
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        
+        User user = loadUser(token);
+        if (user == null || !user.isActive() || user.getTokenVersion() > token.getTokenVersion()) {
+            revokeFamily(token.getFamilyId());
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        
+        return new Rotation(user, issue(user, token.getFamilyId()));
+    }
+    
+    /**
+     * Revokes the family of the given token, if it exists. Unknown tokens are ignored so
+     * logging out is idempotent.
+     */
+    public void revoke(String rawToken) {
+        RefreshToken token = mongoTemplate.findOne(
+                Query.query(Criteria.where("tokenHash").is(hash(rawToken))), RefreshToken.class);
+        if (token != null) {
+            revokeFamily(token.getFamilyId());
+        }
+    }
+    
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.insert(RefreshToken.builder()
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .userId(user.getId())
+                .email(user.getEmail())
+                .tokenVersion(user.getTokenVersion())
+                .createdAt(now)
+                .expiresAt(now.plusNanos(refreshExpirationMs * 1_000_000))
+                .build());
+        return rawToken;
+    }
+    
+    private void revokeFamily(String familyId) {
+        mongoTemplate.remove(Query.query(Criteria.where("familyId").is(familyId)), RefreshToken.class);
+    }
+    
+    private User loadUser(RefreshToken token) {
+        if (demoModeService.isDemoUserId(token.getUserId())) {
+            return demoModeService.getOrCreateDemoUserByEmail(token.getEmail());
+        }
+        return userRepository.findById(token.getUserId()).orElse(null);
+    }
+    
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    public record Rotation(User user, String refreshToken) {
+    }
+}
@@ -4,15 +4,20 @@ import com.ecommerce.dto.request.ReviewRequest;
 import com.ecommerce.dto.response.ReviewResponse;
 import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
-import com.ecommerce.model.Order;
 import com.ecommerce.model.Review;
+import com.ecommerce.model.ReviewVote;
 import com.ecommerce.model.User;
-import com.ecommerce.repository.OrderRepository;
 import com.ecommerce.repository.ProductRepository;
 import com.ecommerce.repository.ReviewRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -25,10 +30,12 @@ public class ReviewService {
     
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
-    private final ProductService productService;
+    private final ProductRatingService productRatingService;
     private final UserService userService;
-    private final OrderRepository orderRepository;
+    private final PurchaseService purchaseService;
     private final DemoModeService demoModeService;
+    private final MongoTemplate mongoTemplate;
+    private final HelpfulVoteCounter helpfulVoteCounter;
     
     public Page<ReviewResponse> getProductReviews(String productId, Pageable pageable) {
         return reviewRepository.findByProductId(productId, pageable)
@@ -82,7 +89,7 @@ public class ReviewService {
         }
         
         // Check if user has purchased the product (verified purchase)
-        boolean isVerifiedPurchase = hasUserPurchasedProduct(user.getId(), productId);
+        boolean isVerifiedPurchase = purchaseService.hasPurchased(user.getId(), productId);
         
         Review review = Review.builder()
                 .productId(productId)
@@ -94,28 +101,18 @@ public class ReviewService {
                 .verified(isVerifiedPurchase)
                 .build();
         
-        review = reviewRepository.save(review);
+        try {
+            review = reviewRepository.save(review);
+        } catch (DuplicateKeyException e) {
+            // A concurrent request got past the check above; the unique index caught it
+            throw new BadRequestException("You have already reviewed this product");
+        }
         
-        // Update product rating
-        updateProductRating(request.getProductId());
+        productRatingService.reviewAdded(productId, review.getRating());
         
         return ReviewResponse.fromReview(review);
     }
     
-    /**
-     * Check if a user has purchased a specific product.
-     * A purchase is verified if the user has a delivered order containing the product.
-     */
-    private boolean hasUserPurchasedProduct(String userId, String productId) {
-        // Get all delivered orders for this user
-        List<Order> deliveredOrders = orderRepository.findByUserIdAndStatus(userId, Order.OrderStatus.DELIVERED);
-        
-        // Check if any delivered order contains the product
-        return deliveredOrders.stream()
-                .flatMap(order -> order.getItems().stream())
-                .anyMatch(item -> item.getProductId().equals(productId));
-    }
-    
     public ReviewResponse updateReview(String reviewId, ReviewRequest request) {
         User user = userService.getCurrentUser();
 
@@ -147,15 +144,23 @@ public class ReviewService {
             throw new BadRequestException("You can only update your own reviews");
         }
         
+        Update update = new Update()
+                .set("rating", request.getRating())
+                .set("updatedAt", LocalDateTime.now());
+        if (request.getTitle() != null) update.set("title", request.getTitle());
+        if (request.getComment() != null) update.set("comment", request.getComment());
+        
+        // The rating this write replaced, so concurrent edits each apply the right delta
+        Review previous = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(reviewId)), update,
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+        if (previous == null) {
+            throw new ResourceNotFoundException("Review", "id", reviewId);
+        }
+        productRatingService.reviewChanged(previous.getProductId(), previous.getRating(), request.getRating());
+        
         review.setRating(request.getRating());
         if (request.getTitle() != null) review.setTitle(request.getTitle());
         if (request.getComment() != null) review.setComment(request.getComment());
-        
-        review = reviewRepository.save(review);
-        
-        // Update product rating
-        updateProductRating(review.getProductId());
-        
         return ReviewResponse.fromReview(review);
     }
     
@@ -185,11 +190,11 @@ public class ReviewService {
             throw new BadRequestException("You can only delete your own reviews");
         }
         
-        String productId = review.getProductId();
-        reviewRepository.delete(review);
-        
-        // Update product rating
-        updateProductRating(productId);
+        // Only the request that actually removed the review takes it out of the aggregates
+        if (mongoTemplate.remove(review).getDeletedCount() > 0) {
+            productRatingService.reviewRemoved(review.getProductId(), review.getRating());
+            mongoTemplate.remove(Query.query(Criteria.where("reviewId").is(reviewId)), ReviewVote.class);
+        }
     }
     
     public ReviewResponse markHelpful(String reviewId) {
@@ -213,23 +218,18 @@ public class ReviewService {
         Review review = reviewRepository.findById(reviewId)
                 .orElseThrow(() -> new ResourceNotFoundException("Review", "id", reviewId));
         
-        review.setHelpfulCount(review.getHelpfulCount() + 1);
-        review = reviewRepository.save(review);
+        try {
+            mongoTemplate.insert(ReviewVote.builder()
+                    .reviewId(reviewId)
+                    .userId(user.getId())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (DuplicateKeyException e) {
+            throw new BadRequestException("You have already marked this review as helpful");
+        }
+        helpfulVoteCounter.increment(reviewId);
         
+        review.setHelpfulCount((int) (review.getHelpfulCount() + helpfulVoteCounter.pending(reviewId)));
         return ReviewResponse.fromReview(review);
     }
-    
-    private void updateProductRating(String productId) {
-        List<Review> reviews = reviewRepository.findByProductId(productId);
-        
-        if (reviews.isEmpty()) {
-            productService.updateProductRating(productId, 0.0, 0);
-        } else {
-            double averageRating = reviews.stream()
-                    .mapToInt(Review::getRating)
-                    .average()
-                    .orElse(0.0);
-            productService.updateProductRating(productId, averageRating, reviews.size());
-        }
-    }
 }
@@ -0,0 +1,208 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.response.SalesTimeseriesResponse;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.SalesRollup;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.Decimal128;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maintains hourly, daily and monthly sales rollups and serves time-series queries from them.
+ * An order contributes to its creation-time buckets while it is in a revenue-bearing state,
+ * so status transitions into or out of that set add or subtract the whole order.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesAnalyticsService {
+
+    // Same definition of a sale as the dashboard revenue
+    private static final Set<Order.OrderStatus> SALE_STATUSES = EnumSet.of(
+            Order.OrderStatus.CONFIRMED,
+            Order.OrderStatus.PROCESSING,
+            Order.OrderStatus.SHIPPED,
+            Order.OrderStatus.DELIVERED);
+
+    private final MongoTemplate mongoTemplate;
+
+    public void recordOrderCreated(Order order) {
+        recordOrderStatusChange(order, null);
+    }
+
+    public void recordOrderStatusChange(Order order, Order.OrderStatus previousStatus) {
+        boolean wasSale = previousStatus != null && SALE_STATUSES.contains(previousStatus);
+        boolean isSale = order.getStatus() != null && SALE_STATUSES.contains(order.getStatus());
+        if (wasSale == isSale) {
+            return;
+        }
+        applyOrder(order, isSale ? 1 : -1);
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) an order from every bucket it falls into,
+     * using one unordered bulk write of upserts.
+     */
+    private void applyOrder(Order order, int sign) {
+        LocalDateTime createdAt = order.getCreatedAt() != null ? order.getCreatedAt() : LocalDateTime.now();
+        Money total = order.getTotalAmount() != null ? order.getTotalAmount() : Money.ZERO;
+        long units = order.getItems().stream().mapToLong(Order.OrderItem::getQuantity).sum();
+
+        Map<String, List<Order.OrderItem>> itemsByCategory = order.getItems().stream()
+                .filter(item -> item.getCategoryId() != null)
+                .collect(Collectors.groupingBy(Order.OrderItem::getCategoryId));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            LocalDateTime bucketStart = granularity.truncate(createdAt);
+            upsertBucket(bulk, granularity, null, bucketStart, total, units, sign);
+
+            itemsByCategory.forEach((categoryId, items) -> upsertBucket(bulk, granularity, categoryId, bucketStart,
+                    Money.ofMinor(items.stream().mapToLong(item -> item.getSubtotal().getMinorUnits()).sum()),
+                    items.stream().mapToLong(Order.OrderItem::getQuantity).sum(),
+                    sign));
+        }
+        bulk.execute();
+    }
+
+    private void upsertBucket(BulkOperations bulk, SalesRollup.Granularity granularity, String categoryId,
+                              LocalDateTime bucketStart, Money revenue, long units, int sign) {
+        Query query = Query.query(Criteria.where("_id").is(SalesRollup.idFor(granularity, categoryId, bucketStart)));
+        Update update = new Update()
+                .setOnInsert("granularity", granularity)
+                .setOnInsert("categoryId", categoryId)
+                .setOnInsert("bucketStart", bucketStart)
+                .inc("revenue", new Decimal128((sign > 0 ? revenue : revenue.negate()).toBigDecimal()))
+                .inc("orderCount", sign)
+                .inc("units", sign * units);
+        bulk.upsert(query, update);
+    }
+
+    public SalesTimeseriesResponse getTimeseries(String granularity, LocalDateTime from, LocalDateTime to,
+                                                 String categoryId) {
+        SalesRollup.Granularity resolved = parseGranularity(granularity);
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(30);
+        if (start.isAfter(end)) {
+            throw new BadRequestException("'from' must be before 'to'");
+        }
+
+        Query query = Query.query(Criteria.where("granularity").is(resolved)
+                        .and("categoryId").is(categoryId)
+                        .and("bucketStart").gte(resolved.truncate(start)).lte(end))
+                .with(Sort.by("bucketStart").ascending());
+
+        List<SalesTimeseriesResponse.Point> points = mongoTemplate.find(query, SalesRollup.class).stream()
+                .filter(rollup -> rollup.getOrderCount() > 0)
+                .map(rollup -> SalesTimeseriesResponse.Point.builder()
+                        .bucketStart(rollup.getBucketStart())
+                        .revenue(rollup.getRevenue())
+                        .orderCount(rollup.getOrderCount())
+                        .units(rollup.getUnits())
+                        .averageOrderValue(rollup.getRevenue()
+                                .divide(BigDecimal.valueOf(rollup.getOrderCount()), 2, RoundingMode.HALF_UP))
+                        .build())
+                .collect(Collectors.toList());
+
+        return SalesTimeseriesResponse.builder()
+                .granularity(resolved.name())
+                .categoryId(categoryId)
+                .from(start)
+                .to(end)
+                .points(points)
+                .build();
+    }
+
+    /**
+     * Rebuilds every rollup from the orders collection, e.g. after the feature is first
+     * deployed on existing data. Orders are streamed, so memory is bounded by the number of
+     * buckets rather than the number of orders.
+     */
+    public long rebuildRollups() {
+        Query query = Query.query(Criteria.where("status").in(SALE_STATUSES));
+        query.fields().include("createdAt", "status", "totalAmount", "items");
+
+        Map<String, SalesRollup> buckets = new HashMap<>();
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.forEach(order -> accumulate(buckets, order));
+        }
+
+        mongoTemplate.remove(new Query(), SalesRollup.class);
+        if (!buckets.isEmpty()) {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class)
+                    .insert(List.copyOf(buckets.values()))
+                    .execute();
+        }
+        return buckets.size();
+    }
+
+    private void accumulate(Map<String, SalesRollup> buckets, Order order) {
+        LocalDateTime createdAt = order.getCreatedAt() != null ? order.getCreatedAt() : LocalDateTime.now();
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            LocalDateTime bucketStart = granularity.truncate(createdAt);
+
+            SalesRollup overall = bucket(buckets, granularity, null, bucketStart);
+            if (order.getTotalAmount() != null) {
+                overall.setRevenue(overall.getRevenue().add(order.getTotalAmount().toBigDecimal()));
+            }
+            overall.setOrderCount(overall.getOrderCount() + 1);
+
+            Set<String> categoriesInOrder = new HashSet<>();
+            for (Order.OrderItem item : order.getItems()) {
+                overall.setUnits(overall.getUnits() + item.getQuantity());
+                if (item.getCategoryId() == null) {
+                    continue;
+                }
+                SalesRollup category = bucket(buckets, granularity, item.getCategoryId(), bucketStart);
+                if (item.getSubtotal() != null) {
+                    category.setRevenue(category.getRevenue().add(item.getSubtotal().toBigDecimal()));
+                }
+                category.setUnits(category.getUnits() + item.getQuantity());
+                if (categoriesInOrder.add(item.getCategoryId())) {
+                    category.setOrderCount(category.getOrderCount() + 1);
+                }
+            }
+        }
+    }
+
+    private static SalesRollup bucket(Map<String, SalesRollup> buckets, SalesRollup.Granularity granularity,
+                                      String categoryId, LocalDateTime bucketStart) {
+        String id = SalesRollup.idFor(granularity, categoryId, bucketStart);
+        return buckets.computeIfAbsent(id, ignored -> SalesRollup.builder()
+                .id(id)
+                .granularity(granularity)
+                .categoryId(categoryId)
+                .bucketStart(bucketStart)
+                .build());
+    }
+
+    private static SalesRollup.Granularity parseGranularity(String granularity) {
+        if (granularity == null || granularity.isBlank()) {
+            return SalesRollup.Granularity.DAY;
+        }
+        try {
+            return SalesRollup.Granularity.valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported granularity: " + granularity);
+        }
+    }
+}
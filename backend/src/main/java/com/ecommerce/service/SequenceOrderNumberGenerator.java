@@ -0,0 +1,80 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequential order numbers handed out from blocks leased off a shared counter document.
+ * Each lease is a single $inc of {@code order.number.block-size}, so instances never hand
+ * out the same number; within a block numbers come from an in-memory counter without
+ * locking. Numbers left in a block when the instance stops are skipped, not reused.
+ */
+@Service
+@ConditionalOnProperty(name = "order.number.strategy", havingValue = "sequence", matchIfMissing = true)
+public class SequenceOrderNumberGenerator implements OrderNumberGenerator {
+    
+    private static final Logger log = LoggerFactory.getLogger(SequenceOrderNumberGenerator.class);
+    
+    static final String COUNTER_ID = "orderNumber";
+    
+    private final MongoTemplate mongoTemplate;
+    private final int blockSize;
+    private final Object leaseLock = new Object();
+    
+    private volatile Block current = new Block(0, 0);
+    
+    public SequenceOrderNumberGenerator(MongoTemplate mongoTemplate,
+                                        @Value("${order.number.block-size:100}") int blockSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.blockSize = Math.max(1, blockSize);
+    }
+    
+    @Override
+    public String nextOrderNumber() {
+        while (true) {
+            Block block = current;
+            long next = block.next.getAndIncrement();
+            if (next < block.end) {
+                return PREFIX + String.format("%010d", next);
+            }
+            synchronized (leaseLock) {
+                if (current == block) {
+                    current = leaseBlock();
+                }
+            }
+        }
+    }
+    
+    private Block leaseBlock() {
+        Counter counter = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(COUNTER_ID)),
+                new Update().inc("value", blockSize),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Counter.class);
+        
+        long end = counter.getValue() + 1;
+        log.debug("Leased order numbers [{}, {})", end - blockSize, end);
+        return new Block(end - blockSize, end);
+    }
+    
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+        
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style order numbers: 41 bits of milliseconds since {@link #EPOCH_MILLIS},
+ * 10 bits of node id and a 12 bit per-millisecond sequence. No coordination is needed as
+ * long as every instance runs with a distinct {@code order.number.node-id}.
+ * <p>
+ * The timestamp and sequence live in a single {@link AtomicLong} advanced with CAS. When a
+ * millisecond's sequence is used up, or the clock steps backwards, the generator keeps
+ * counting from the last timestamp it issued rather than reusing one.
+ */
+@Service
+@ConditionalOnProperty(name = "order.number.strategy", havingValue = "snowflake")
+public class SnowflakeOrderNumberGenerator implements OrderNumberGenerator {
+    
+    private static final Logger log = LoggerFactory.getLogger(SnowflakeOrderNumberGenerator.class);
+    
+    // 2024-01-01T00:00:00Z
+    static final long EPOCH_MILLIS = 1704067200000L;
+    
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    
+    private final long nodeId;
+    
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong lastState = new AtomicLong();
+    
+    public SnowflakeOrderNumberGenerator(@Value("${order.number.node-id:-1}") long nodeId) {
+        if (nodeId < 0) {
+            nodeId = (ManagementFactory.getRuntimeMXBean().getName().hashCode() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+            log.warn("order.number.node-id is not set, derived node id {} from the process name; "
+                    + "set it explicitly to guarantee uniqueness across instances", nodeId);
+        } else if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order.number.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+    
+    @Override
+    public String nextOrderNumber() {
+        long state = lastState.updateAndGet(last -> {
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            return now > last ? now : last + 1;
+        });
+        
+        long millis = state >>> SEQUENCE_BITS;
+        long sequence = state & ((1L << SEQUENCE_BITS) - 1);
+        long id = (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+        return PREFIX + id;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Product;
+import com.ecommerce.search.ProductFacetEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Stock mutations expressed as single atomic updates on the product document, so concurrent
+ * checkouts can't both pass a stock check and oversell (no read-modify-write).
+ */
+@Service
+@RequiredArgsConstructor
+public class StockService {
+    
+    private final MongoTemplate mongoTemplate;
+    private final DashboardService dashboardService;
+    private final ProductBatchLoader productBatchLoader;
+    private final ProductFacetEngine productFacetEngine;
+    
+    /**
+     * Takes {@code quantity} units from stock if, and only if, at least that many are
+     * available. Returns the updated product, or {@code null} when the product doesn't
+     * exist or has insufficient stock.
+     */
+    public Product decrementStock(String productId, int quantity) {
+        Query query = Query.query(Criteria.where("_id").is(productId)
+                .and("stockQuantity").gte(quantity));
+        Product updated = mongoTemplate.findAndModify(query,
+                new Update().inc("stockQuantity", -quantity),
+                FindAndModifyOptions.options().returnNew(true),
+                Product.class);
+        
+        if (updated != null) {
+            dashboardService.recordStockChange(updated.getStockQuantity() + quantity, updated.getStockQuantity());
+            productFacetEngine.adjustStock(productId, -quantity);
+        }
+        return updated;
+    }
+    
+    /**
+     * Puts stock back, e.g. when an order is cancelled or a partially reserved checkout is
+     * rolled back. All lines go out as one bulk write; the products are read once up front
+     * (a single $in query) only to keep the low-stock counter in step.
+     */
+    public void incrementStock(Map<String, Integer> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return;
+        }
+        
+        Map<String, Product> before = productBatchLoader.loadAll(quantitiesByProductId.keySet());
+        
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantitiesByProductId.forEach((productId, quantity) -> bulk.updateOne(
+                Query.query(Criteria.where("_id").is(productId)),
+                new Update().inc("stockQuantity", quantity)));
+        bulk.execute();
+        quantitiesByProductId.forEach(productFacetEngine::adjustStock);
+        
+        before.values().forEach(product -> dashboardService.recordStockChange(
+                product.getStockQuantity(),
+                product.getStockQuantity() + quantitiesByProductId.get(product.getId())));
+    }
+}
@@ -1,16 +1,31 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.request.UpdateProfileRequest;
+import com.ecommerce.dto.response.CursorPageResponse;
 import com.ecommerce.dto.response.UserResponse;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.User;
 import com.ecommerce.repository.UserRepository;
+import com.ecommerce.security.TokenVersionRegistry;
+import com.ecommerce.security.UserCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -18,13 +33,39 @@ public class UserService {
     
     private final UserRepository userRepository;
     private final DemoModeService demoModeService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserCache userCache;
+    private final KeysetPager keysetPager;
+    private final MongoTemplate mongoTemplate;
+    
+    private static final String CURRENT_USER_ATTRIBUTE = UserService.class.getName() + ".currentUser";
     
+    /**
+     * Returns the authenticated user, loading it at most once per request: services that
+     * call this several times while handling a request share the same instance.
+     */
     public User getCurrentUser() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Object cached = attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (cached instanceof User user) {
+                return user;
+            }
+        }
+        
+        User user = loadCurrentUser();
+        if (attributes != null) {
+            attributes.setAttribute(CURRENT_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+    
+    private User loadCurrentUser() {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
         if (demoModeService.isDemoEmail(email)) {
             return demoModeService.getOrCreateDemoUserByEmail(email);
         }
-        return userRepository.findByEmail(email)
+        return userCache.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
     }
     
@@ -35,7 +76,35 @@ public class UserService {
     @Transactional
     public UserResponse updateProfile(UpdateProfileRequest request) {
         User user = getCurrentUser();
-        
+
+        if (demoModeService.isDemoUserId(user.getId())) {
+            applyProfile(user, request);
+            return UserResponse.fromUser(user);
+        }
+
+        // The current user may come from the cache, so only the profile fields are written;
+        // saving the whole document could undo a concurrent change to roles, status or tokenVersion
+        Update update = new Update().set("updatedAt", LocalDateTime.now());
+        if (hasValue(request.getFirstName())) update.set("firstName", request.getFirstName());
+        if (hasValue(request.getLastName())) update.set("lastName", request.getLastName());
+        if (request.getPhone() != null) update.set("phone", request.getPhone());
+        if (hasValue(request.getProfileImage())) update.set("profileImage", request.getProfileImage());
+        if (request.getStreet() != null) update.set("address.street", request.getStreet());
+        if (request.getCity() != null) update.set("address.city", request.getCity());
+        if (request.getState() != null) update.set("address.state", request.getState());
+        if (request.getZipCode() != null) update.set("address.zipCode", request.getZipCode());
+        if (request.getCountry() != null) update.set("address.country", request.getCountry());
+
+        User updated = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(user.getId())), update,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (updated == null) {
+            throw new ResourceNotFoundException("User", "id", user.getId());
+        }
+        userCache.evict(updated);
+        return UserResponse.fromUser(updated);
+    }
+    
+    private void applyProfile(User user, UpdateProfileRequest request) {
         if (hasValue(request.getFirstName())) {
             user.setFirstName(request.getFirstName());
         }
@@ -49,7 +118,6 @@ public class UserService {
             user.setProfileImage(request.getProfileImage());
         }
         
-        // Update address - always update if any address field is provided
         User.Address address = user.getAddress();
         if (address == null) {
             address = new User.Address();
@@ -62,13 +130,6 @@ public class UserService {
         if (request.getCountry() != null) address.setCountry(request.getCountry());
         
         user.setAddress(address);
-
-        if (demoModeService.isDemoUserId(user.getId())) {
-            return UserResponse.fromUser(user);
-        }
-
-        user = userRepository.save(user);
-        return UserResponse.fromUser(user);
     }
     
     private boolean hasValue(String value) {
@@ -80,6 +141,13 @@ public class UserService {
         return userRepository.findAll(pageable).map(UserResponse::fromUser);
     }
     
+    public CursorPageResponse<UserResponse> getAllUsers(String cursor, int size, boolean withTotal) {
+        return keysetPager.page(new Query(), User.class, "createdAt", Sort.Direction.DESC, cursor, size,
+                        User::getCreatedAt, User::getId,
+                        withTotal ? KeysetPager.Total.ESTIMATED : KeysetPager.Total.NONE)
+                .map(UserResponse::fromUser);
+    }
+    
     public UserResponse getUserById(String userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
@@ -87,39 +155,56 @@ public class UserService {
     }
     
     public void toggleUserStatus(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        user.setActive(!user.isActive());
-        userRepository.save(user);
+        // Flip the status the user had when read; if someone changed it since, read it again
+        while (true) {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+            User updated = changeAccount(userId, Criteria.where("active").is(user.isActive()),
+                    new Update().set("active", !user.isActive()));
+            if (updated != null) {
+                return;
+            }
+        }
     }
     
     public UserResponse updateUserRole(String userId, String role) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        
-        user.getRoles().clear();
-        user.getRoles().add(User.Role.valueOf(role.toUpperCase()));
-        
-        // Ensure USER role is always present
-        if (!user.getRoles().contains(User.Role.USER)) {
-            user.getRoles().add(User.Role.USER);
+        // USER is always present
+        Set<User.Role> roles = EnumSet.of(User.Role.valueOf(role.toUpperCase()), User.Role.USER);
+        User user = changeAccount(userId, null, new Update().set("roles", roles));
+        if (user == null) {
+            throw new ResourceNotFoundException("User", "id", userId);
         }
-        
-        user = userRepository.save(user);
         return UserResponse.fromUser(user);
     }
     
     public void activateUser(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        user.setActive(true);
-        userRepository.save(user);
+        if (changeAccount(userId, null, new Update().set("active", true)) == null) {
+            throw new ResourceNotFoundException("User", "id", userId);
+        }
     }
     
     public void deactivateUser(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        user.setActive(false);
-        userRepository.save(user);
+        if (changeAccount(userId, null, new Update().set("active", false)) == null) {
+            throw new ResourceNotFoundException("User", "id", userId);
+        }
+    }
+    
+    /**
+     * Applies an admin change to roles or status as one targeted update, so it can't undo a
+     * concurrent profile edit, and bumps tokenVersion: tokens carry the roles and version they
+     * were issued with, so they must not outlive the change. Returns the updated user, or
+     * {@code null} if there is none matching {@code condition}.
+     */
+    private User changeAccount(String userId, Criteria condition, Update update) {
+        Criteria criteria = Criteria.where("_id").is(userId);
+        Query query = Query.query(condition == null ? criteria : new Criteria().andOperator(criteria, condition));
+        update.inc("tokenVersion", 1).set("updatedAt", LocalDateTime.now());
+        
+        User user = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class);
+        if (user != null) {
+            tokenVersionRegistry.update(user.getId(), user.getTokenVersion());
+            userCache.evict(user);
+        }
+        return user;
     }
 }
@@ -13,7 +13,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,17 +21,15 @@ public class WishlistService {
     private final WishlistRepository wishlistRepository;
     private final ProductRepository productRepository;
     private final DemoModeService demoModeService;
+    private final ProductBatchLoader productBatchLoader;
 
     @Transactional
     public Wishlist getOrCreateWishlist(User user) {
         if (demoModeService.isDemoUserId(user.getId())) {
             Wishlist wishlist = new Wishlist();
             wishlist.setUser(user);
-            wishlist.setProducts(demoModeService.getWishlistProductIds(user).stream()
-                    .filter(Objects::nonNull)
-                    .map(id -> productRepository.findById(Objects.requireNonNull(id)).orElse(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toCollection(ArrayList::new)));
+            wishlist.setProducts(new ArrayList<>(
+                    productBatchLoader.loadOrdered(demoModeService.getWishlistProductIds(user))));
             return wishlist;
         }
         return wishlistRepository.findByUser_Id(user.getId())
@@ -46,10 +43,7 @@ public class WishlistService {
     @Transactional(readOnly = true)
     public List<ProductResponse> getWishlist(User user) {
         if (demoModeService.isDemoUserId(user.getId())) {
-            return demoModeService.getWishlistProductIds(user).stream()
-                    .filter(Objects::nonNull)
-                    .map(id -> productRepository.findById(Objects.requireNonNull(id)).orElse(null))
-                    .filter(Objects::nonNull)
+            return productBatchLoader.loadOrdered(demoModeService.getWishlistProductIds(user)).stream()
                     .map(ProductResponse::fromProduct)
                     .collect(Collectors.toList());
         }
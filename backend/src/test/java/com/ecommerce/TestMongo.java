@@ -0,0 +1,54 @@
+package com.ecommerce;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Connection to the MongoDB that integration tests run against, taken from the
+ * {@code test.mongodb.uri} system property or the {@code TEST_MONGODB_URI} environment
+ * variable. Tests using it are skipped when neither is set.
+ */
+public final class TestMongo {
+    
+    private TestMongo() {
+    }
+    
+    public static boolean isConfigured() {
+        String uri = configuredUri();
+        return uri != null && !uri.isBlank();
+    }
+    
+    public static String uri() {
+        assumeTrue(isConfigured(), "Set test.mongodb.uri or TEST_MONGODB_URI to run against MongoDB");
+        return configuredUri();
+    }
+    
+    public static MongoClient client() {
+        return MongoClients.create(uri());
+    }
+    
+    /**
+     * A database name of its own, so concurrent test runs don't see each other's documents.
+     */
+    public static String scratchDatabase() {
+        String database = new ConnectionString(uri()).getDatabase();
+        return (database != null ? database : "ecommerce") + "_test_" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    /**
+     * A template on a scratch database; drop it with {@code template.getDb().drop()} when done.
+     */
+    public static MongoTemplate scratchTemplate(MongoClient client) {
+        return new MongoTemplate(client, scratchDatabase());
+    }
+    
+    private static String configuredUri() {
+        return System.getProperty("test.mongodb.uri", System.getenv("TEST_MONGODB_URI"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+    
+    @Test
+    void roundsHalfUpToMinorUnits() {
+        assertThat(Money.of(new BigDecimal("10.005")).getMinorUnits()).isEqualTo(1001);
+        assertThat(Money.of(new BigDecimal("10.004")).getMinorUnits()).isEqualTo(1000);
+        assertThat(Money.of(new BigDecimal("-10.005")).getMinorUnits()).isEqualTo(-1001);
+        assertThat(Money.of(null)).isNull();
+    }
+    
+    @Test
+    void parsesDecimalStrings() {
+        assertThat(Money.parse(" 19.99 ")).isEqualTo(Money.ofMinor(1999));
+        assertThat(Money.parse("")).isNull();
+        assertThat(Money.parse(null)).isNull();
+    }
+    
+    @Test
+    void addsSubtractsAndMultiplies() {
+        Money price = Money.ofMinor(1999);
+        
+        assertThat(price.times(3)).isEqualTo(Money.ofMinor(5997));
+        assertThat(price.plus(Money.ofMajor(1))).isEqualTo(Money.ofMinor(2099));
+        assertThat(price.minus(price)).isSameAs(Money.ZERO);
+        assertThat(price.negate().isNegative()).isTrue();
+    }
+    
+    @Test
+    void percentRoundsHalfUpAwayFromZero() {
+        // 18% of 0.25 is 0.045
+        assertThat(Money.ofMinor(25).percent(18)).isEqualTo(Money.ofMinor(5));
+        assertThat(Money.ofMinor(-25).percent(18)).isEqualTo(Money.ofMinor(-5));
+        // 18% of 0.22 is 0.0396
+        assertThat(Money.ofMinor(22).percent(18)).isEqualTo(Money.ofMinor(4));
+        assertThat(Money.ofMajor(100).percent(18)).isEqualTo(Money.ofMajor(18));
+    }
+    
+    @Test
+    void throwsOnOverflowInsteadOfWrapping() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+        
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> max.times(2)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMajor(Long.MAX_VALUE / 10)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1e30"))).isInstanceOf(ArithmeticException.class);
+    }
+    
+    @Test
+    void comparesByAmount() {
+        assertThat(Money.ofMinor(100)).isEqualByComparingTo(Money.of(new BigDecimal("1.00")));
+        assertThat(Money.ofMinor(100).isGreaterThanOrEqualTo(Money.ofMinor(99))).isTrue();
+        assertThat(Money.ofMinor(100)).hasSameHashCodeAs(Money.ofMajor(1));
+    }
+    
+    @Test
+    void serializesAsPlainDecimal() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        
+        assertThat(Money.ofMinor(1999).toString()).isEqualTo("19.99");
+        assertThat(Money.ofMajor(5).toBigDecimal()).isEqualTo(new BigDecimal("5.00"));
+        assertThat(mapper.writeValueAsString(Money.ofMinor(1999))).isEqualTo("19.99");
+        assertThat(mapper.readValue("19.99", Money.class)).isEqualTo(Money.ofMinor(1999));
+    }
+}
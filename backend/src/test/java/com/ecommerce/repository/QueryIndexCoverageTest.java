@@ -0,0 +1,312 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.TestMongo;
+import com.ecommerce.config.MongoConfig;
+import com.ecommerce.config.MongoIndexInitializer;
+import com.ecommerce.security.TokenVersionRegistry;
+import com.ecommerce.security.UserCache;
+import com.ecommerce.service.CartService;
+import com.ecommerce.service.DashboardService;
+import com.ecommerce.service.DemoModeService;
+import com.ecommerce.service.InventoryHoldService;
+import com.ecommerce.service.KeysetPager;
+import com.ecommerce.service.OrderNumberGenerator;
+import com.ecommerce.service.OrderService;
+import com.ecommerce.service.PaymentService;
+import com.ecommerce.service.ProductBatchLoader;
+import com.ecommerce.service.ProductService;
+import com.ecommerce.service.ProductSort;
+import com.ecommerce.service.PurchaseService;
+import com.ecommerce.service.SalesAnalyticsService;
+import com.ecommerce.service.StockService;
+import com.ecommerce.service.UserService;
+import com.ecommerce.search.ProductFacetEngine;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.ProductSuggester;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Explains every query the repositories and the keyset listings send, against the indexes
+ * {@link MongoIndexInitializer} creates, and fails on any the server would answer with a
+ * collection scan. The queries aren't written out here: each repository query method is
+ * called with placeholder arguments and the commands the driver sends are captured, so a new
+ * or changed method is covered without touching this test. The catalog listing must also
+ * walk its index in order for every {@link ProductSort}, without an in-memory SORT stage.
+ * <p>
+ * Runs against the MongoDB given by {@link TestMongo}, in a scratch database.
+ */
+@DataMongoTest
+@EnabledIf("com.ecommerce.TestMongo#isConfigured")
+@Import({MongoConfig.class, MongoIndexInitializer.class, KeysetPager.class,
+        ProductService.class, OrderService.class, UserService.class,
+        QueryIndexCoverageTest.CommandCapture.class})
+class QueryIndexCoverageTest {
+
+    private static final String ID = "000000000000000000000000";
+    private static final Set<String> QUERY_COMMANDS = Set.of(
+            "find", "aggregate", "count", "distinct", "delete", "update", "findAndModify");
+    private static final String DATABASE = TestMongo.isConfigured() ? TestMongo.scratchDatabase() : "unused";
+    private static final List<BsonDocument> sent = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private UserService userService;
+
+    @MockBean
+    private CartService cartService;
+    @MockBean
+    private PaymentService paymentService;
+    @MockBean
+    private DemoModeService demoModeService;
+    @MockBean
+    private DashboardService dashboardService;
+    @MockBean
+    private SalesAnalyticsService salesAnalyticsService;
+    @MockBean
+    private StockService stockService;
+    @MockBean
+    private ProductBatchLoader productBatchLoader;
+    @MockBean
+    private InventoryHoldService inventoryHoldService;
+    @MockBean
+    private OrderNumberGenerator orderNumberGenerator;
+    @MockBean
+    private PurchaseService purchaseService;
+    @MockBean
+    private TokenVersionRegistry tokenVersionRegistry;
+    @MockBean
+    private UserCache userCache;
+    @MockBean
+    private ProductSearchIndex productSearchIndex;
+    @MockBean
+    private ProductSuggester productSuggester;
+    @MockBean
+    private ProductFacetEngine productFacetEngine;
+    @MockBean
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", TestMongo::uri);
+        registry.add("spring.data.mongodb.database", () -> DATABASE);
+    }
+
+    // Explaining a query on a missing collection reports EOF whatever indexes there are
+    @BeforeAll
+    static void createCollections(@Autowired MongoTemplate mongoTemplate, @Autowired MongoMappingContext mappingContext) {
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)
+                    && !mongoTemplate.collectionExists(entity.getCollection())) {
+                mongoTemplate.createCollection(entity.getCollection());
+            }
+        }
+    }
+
+    @AfterAll
+    static void dropDatabase(@Autowired MongoTemplate mongoTemplate) {
+        mongoTemplate.getDb().drop();
+    }
+
+    @BeforeEach
+    void clearCapturedCommands() {
+        sent.clear();
+    }
+
+    @Test
+    void repositoryQueriesUseAnIndex() throws Exception {
+        Repositories repositories = new Repositories(applicationContext);
+        List<String> collectionScans = new ArrayList<>();
+
+        for (Class<?> domainType : repositories) {
+            Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            for (Method method : repositories.getRepositoryInformationFor(domainType).orElseThrow().getQueryMethods()) {
+                sent.clear();
+                invoke(repository, method);
+                for (BsonDocument command : sent) {
+                    Set<String> stages = winningPlanStages(command);
+                    if (stages.contains("COLLSCAN")) {
+                        collectionScans.add(method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                                + " " + command.getFirstKey() + " " + stages);
+                    }
+                }
+            }
+        }
+
+        assertThat(collectionScans).as("Queries without a supporting index").isEmpty();
+    }
+
+    @Test
+    void keysetListingsUseAnIndex() {
+        orderService.getAllOrders(null, 20, true);
+        userService.getAllUsers(null, 20, true);
+
+        for (BsonDocument command : sent) {
+            assertThat(winningPlanStages(command)).as(command.toJson()).doesNotContain("COLLSCAN");
+        }
+    }
+
+    @Test
+    void catalogListingsWalkTheirSortIndex() {
+        for (ProductSort sort : ProductSort.values()) {
+            sent.clear();
+            productRepository.findByActiveTrue(PageRequest.of(0, 20, sort.toSort()));
+            productService.getAllProducts(null, 20, sort, false);
+
+            List<BsonDocument> finds = sent.stream().filter(command -> command.getFirstKey().equals("find")).toList();
+            assertThat(finds).as(sort.key()).hasSize(2);
+            for (BsonDocument find : finds) {
+                assertThat(winningPlanStages(find)).as(sort.key() + " " + find.toJson())
+                        .contains("IXSCAN")
+                        .doesNotContain("COLLSCAN", "SORT");
+            }
+        }
+    }
+
+    private static void invoke(Object repository, Method method) throws Exception {
+        Object[] arguments = new Object[method.getParameterCount()];
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            arguments[i] = placeholder(types[i], method);
+        }
+        try {
+            method.invoke(repository, arguments);
+        } catch (InvocationTargetException e) {
+            throw new AssertionError("Could not run " + method, e.getCause());
+        }
+    }
+
+    // The planner's choice depends on the shape of the query, not the values
+    private static Object placeholder(Class<?> type, Method method) {
+        if (type == String.class) {
+            return ID;
+        }
+        if (type == org.springframework.data.domain.Pageable.class) {
+            return PageRequest.of(0, 20);
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return List.of(ID);
+        }
+        if (type == Decimal128.class) {
+            return new Decimal128(BigDecimal.ONE);
+        }
+        if (type == BigDecimal.class) {
+            return BigDecimal.ONE;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type == double.class || type == Double.class) {
+            return 4.0;
+        }
+        if (type == int.class || type == Integer.class) {
+            return 10;
+        }
+        if (type == long.class || type == Long.class) {
+            return 10L;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return true;
+        }
+        throw new AssertionError("No placeholder for a " + type.getName() + " argument of " + method);
+    }
+
+    private Set<String> winningPlanStages(BsonDocument command) {
+        BsonDocument explained = new BsonDocument();
+        command.forEach((key, value) -> {
+            // Drop the session and routing fields the driver adds; explain brings its own
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explained.append(key, value);
+            }
+        });
+        Document explain = mongoTemplate.getDb().runCommand(new BsonDocument("explain", explained)
+                .append("verbosity", new BsonString("queryPlanner")));
+
+        Set<String> stages = new LinkedHashSet<>();
+        collectWinningPlans(explain, stages, false);
+        return stages;
+    }
+
+    // Aggregations nest the plan under their first stage, so look for winning plans anywhere
+    private static void collectWinningPlans(Object node, Set<String> stages, boolean inWinningPlan) {
+        if (node instanceof Map<?, ?> map) {
+            if (inWinningPlan && map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            map.forEach((key, value) -> collectWinningPlans(value, stages,
+                    inWinningPlan || "winningPlan".equals(key)));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectWinningPlans(value, stages, inWinningPlan));
+        }
+    }
+
+    /**
+     * Records the query commands the application sends to the scratch database.
+     */
+    @TestConfiguration
+    static class CommandCapture {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer captureQueries() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (DATABASE.equals(event.getDatabaseName()) && QUERY_COMMANDS.contains(event.getCommandName())) {
+                        sent.add(event.getCommand().clone());
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecommerce.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+    
+    private final InvertedIndex index = new InvertedIndex(new float[]{3f, 2f, 1.5f, 1f, 1f});
+    
+    @Test
+    void ranksByBoostedFieldFrequency() {
+        index.put("in-name", fields(List.of("shoe"), List.of(), List.of()));
+        index.put("in-description", fields(List.of("boot"), List.of(), List.of("shoe")));
+        index.put("unrelated", fields(List.of("sock"), List.of(), List.of()));
+        
+        InvertedIndex.Hits hits = index.search(List.of("shoe"), 0, 10);
+        
+        assertThat(hits.ids()).containsExactly("in-name", "in-description");
+        assertThat(hits.total()).isEqualTo(2);
+    }
+    
+    @Test
+    void pagesAgreeOnTheOrderOfTies() {
+        for (int i = 0; i < 25; i++) {
+            index.put("p" + i, fields(List.of("lamp"), List.of(), List.of()));
+        }
+        
+        List<String> paged = new ArrayList<>();
+        for (int offset = 0; offset < 25; offset += 10) {
+            paged.addAll(index.search(List.of("lamp"), offset, 10).ids());
+        }
+        
+        assertThat(paged).hasSize(25).doesNotHaveDuplicates()
+                .isEqualTo(index.search(List.of("lamp"), 0, 25).ids());
+    }
+    
+    @Test
+    void replacingADocumentDropsItsOldTerms() {
+        index.put("p1", fields(List.of("red", "chair"), List.of(), List.of()));
+        index.put("p1", fields(List.of("blue", "chair"), List.of(), List.of()));
+        
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search(List.of("red"), 0, 10).total()).isZero();
+        assertThat(index.search(List.of("blue"), 0, 10).ids()).containsExactly("p1");
+    }
+    
+    @Test
+    void removedDocumentsStopMatchingAndTheirOrdinalsAreReused() {
+        for (int i = 0; i < 10; i++) {
+            index.put("p" + i, fields(List.of("desk"), List.of(), List.of()));
+        }
+        for (int i = 0; i < 10; i += 2) {
+            index.remove("p" + i);
+        }
+        index.put("new", fields(List.of("desk", "new"), List.of(), List.of()));
+        index.remove("missing");
+        
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.search(List.of("desk"), 0, 20).ids())
+                .containsExactlyInAnyOrder("p1", "p3", "p5", "p7", "p9", "new");
+        assertThat(index.search(List.of("new"), 0, 20).ids()).containsExactly("new");
+    }
+    
+    @Test
+    void survivesChurnOfReusedOrdinals() {
+        Random random = new Random(7);
+        Map<String, List<String>> live = new HashMap<>();
+        for (int round = 0; round < 2000; round++) {
+            String id = "p" + random.nextInt(100);
+            if (random.nextInt(3) == 0) {
+                index.remove(id);
+                live.remove(id);
+            } else {
+                List<String> name = List.of("term" + random.nextInt(5), "term" + random.nextInt(5));
+                index.put(id, fields(name, List.of(), List.of()));
+                live.put(id, name);
+            }
+        }
+        
+        assertThat(index.size()).isEqualTo(live.size());
+        for (int term = 0; term < 5; term++) {
+            String queried = "term" + term;
+            Set<String> expected = live.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(queried))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            InvertedIndex.Hits hits = index.search(List.of(queried), 0, 100);
+            assertThat(hits.ids()).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(hits.total()).isEqualTo(expected.size());
+        }
+    }
+    
+    @Test
+    void emptyQueriesAndPagesPastTheEndReturnNothing() {
+        index.put("p1", fields(List.of("table"), List.of(), List.of()));
+        
+        assertThat(index.search(List.of(), 0, 10).ids()).isEmpty();
+        assertThat(index.search(List.of("table"), 5, 10).ids()).isEmpty();
+        assertThat(index.search(List.of("table"), 5, 10).total()).isEqualTo(1);
+    }
+    
+    private static List<List<String>> fields(List<String> name, List<String> brand, List<String> description) {
+        return List.of(name, brand, description, List.of(), List.of());
+    }
+}
@@ -0,0 +1,187 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.request.ProductQueryRequest;
+import com.ecommerce.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFacetEngineSnapshotTest {
+    
+    private final ProductFacetEngine.Snapshot snapshot = new ProductFacetEngine.Snapshot();
+    private final LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+    
+    @BeforeEach
+    void indexCatalog() {
+        snapshot.put(product("p1", "Acme", "shoes", "30.00", null, 4.5, 10, 1));
+        snapshot.put(product("p2", "Acme", "shoes", "120.00", "90.00", 3.2, 0, 2));
+        snapshot.put(product("p3", "Zeta", "shoes", "15.00", null, 4.9, 5, 3));
+        snapshot.put(product("p4", "Zeta", "hats", "600.00", null, 1.0, 2, 4));
+        snapshot.optimize();
+    }
+    
+    @Test
+    void countsFacetsOverTheFilteredMatches() {
+        ProductFacetEngine.FacetResult result = snapshot.query(
+                ProductQueryRequest.builder().categoryId("shoes").build(), null, 0, 10);
+        
+        assertThat(result.total()).isEqualTo(3);
+        assertThat(result.brands()).containsEntry("Acme", 2L).containsEntry("Zeta", 1L);
+        assertThat(result.categories()).extracting(ProductFacetEngine.CategoryCount::categoryId).containsExactly("shoes");
+        // 15.00 and 30.00 fall in the 0 and 25 buckets, the discounted 90.00 in the 50 bucket
+        assertThat(result.priceCounts()).containsExactly(1, 1, 1, 0, 0, 0, 0);
+        assertThat(result.ratingCounts()).containsExactly(0, 0, 0, 1, 2);
+    }
+    
+    @Test
+    void checksExactBoundsWithinThePriceBuckets() {
+        ProductQueryRequest request = ProductQueryRequest.builder()
+                .minPrice(new BigDecimal("20")).maxPrice(new BigDecimal("95")).build();
+        
+        assertThat(snapshot.query(request, null, 0, 10).pageIds()).containsExactlyInAnyOrder("p1", "p2");
+    }
+    
+    @Test
+    void filtersByStockBrandAndRating() {
+        ProductQueryRequest request = ProductQueryRequest.builder()
+                .inStock(true).brands(List.of("Zeta")).minRating(4.0).build();
+        
+        assertThat(snapshot.query(request, null, 0, 10).pageIds()).containsExactly("p3");
+    }
+    
+    @Test
+    void sortsAndPagesLikeTheDatabase() {
+        ProductQueryRequest byPrice = ProductQueryRequest.builder().sortBy("price").sortDir("asc").build();
+        ProductQueryRequest newest = ProductQueryRequest.builder().build();
+        
+        assertThat(snapshot.query(byPrice, null, 0, 2).pageIds()).containsExactly("p3", "p1");
+        assertThat(snapshot.query(byPrice, null, 2, 2).pageIds()).containsExactly("p2", "p4");
+        assertThat(snapshot.query(newest, null, 0, 10).pageIds()).containsExactly("p4", "p3", "p2", "p1");
+        assertThat(snapshot.query(newest, null, 4, 10).pageIds()).isEmpty();
+    }
+    
+    @Test
+    void keepsTextRelevanceOrderUnlessSortedOtherwise() {
+        ProductQueryRequest relevance = ProductQueryRequest.builder().sortBy("relevance").build();
+        
+        ProductFacetEngine.FacetResult result = snapshot.query(relevance, List.of("p4", "missing", "p1"), 0, 10);
+        
+        assertThat(result.pageIds()).containsExactly("p4", "p1");
+        assertThat(result.total()).isEqualTo(2);
+    }
+    
+    @Test
+    void followsStockChangesUpdatesAndRemovals() {
+        ProductQueryRequest inStock = ProductQueryRequest.builder().inStock(true).build();
+        
+        snapshot.adjustStock("p2", 3);
+        snapshot.adjustStock("p1", -10);
+        assertThat(snapshot.query(inStock, null, 0, 10).pageIds()).containsExactlyInAnyOrder("p2", "p3", "p4");
+        
+        Product renamed = product("p3", "Acme", "hats", "15.00", null, 4.9, 5, 3);
+        snapshot.put(renamed);
+        snapshot.remove("p4");
+        Product inactive = product("p2", "Acme", "shoes", "120.00", null, 3.2, 3, 2);
+        inactive.setActive(false);
+        snapshot.put(inactive);
+        
+        ProductFacetEngine.FacetResult result = snapshot.query(new ProductQueryRequest(), null, 0, 10);
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(result.brands()).containsOnlyKeys("Acme");
+        assertThat(result.pageIds()).containsExactly("p3", "p1");
+        
+        // Freed ordinals are reused without leaking the previous product's bits
+        snapshot.put(product("p5", "Nova", "lamps", "40.00", null, 2.0, 1, 5));
+        assertThat(snapshot.query(ProductQueryRequest.builder().brands(List.of("Zeta")).build(), null, 0, 10).total()).isZero();
+        assertThat(snapshot.query(ProductQueryRequest.builder().brands(List.of("Nova")).build(), null, 0, 10).pageIds())
+                .containsExactly("p5");
+    }
+    
+    @Test
+    void pagesAgreeWithAFullSortWhetherWalkedOrSorted() {
+        ProductFacetEngine.Snapshot large = new ProductFacetEngine.Snapshot();
+        Random random = new Random(42);
+        Map<String, Product> catalog = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            catalog.put("id" + i, randomProduct("id" + i, i % 60 == 0 ? "Rare" : "Common", random));
+        }
+        catalog.values().forEach(large::put);
+        large.optimize();
+        // Changes after the orderings are built are applied to them in place
+        for (int i = 0; i < 300; i += 7) {
+            Product changed = randomProduct("id" + i, "Common", random);
+            catalog.put(changed.getId(), changed);
+            large.put(changed);
+        }
+        for (int i = 3; i < 300; i += 11) {
+            catalog.remove("id" + i);
+            large.remove("id" + i);
+        }
+        
+        for (String sortBy : Arrays.asList(null, "price", "averageRating", "name")) {
+            for (String sortDir : List.of("asc", "desc")) {
+                // The common brand is walked in sort order; the rare one is sorted directly
+                for (String brand : List.of("Common", "Rare")) {
+                    ProductQueryRequest request = ProductQueryRequest.builder()
+                            .brands(List.of(brand)).sortBy(sortBy).sortDir(sortDir).build();
+                    List<String> expected = catalog.values().stream()
+                            .filter(product -> product.getBrand().equals(brand))
+                            .sorted(order(sortBy, sortDir))
+                            .map(Product::getId)
+                            .toList();
+                    
+                    List<String> paged = new ArrayList<>();
+                    for (int offset = 0; offset < expected.size() + 7; offset += 7) {
+                        paged.addAll(large.query(request, null, offset, 7).pageIds());
+                    }
+                    assertThat(paged).as(sortBy + " " + sortDir + " " + brand).isEqualTo(expected);
+                }
+            }
+        }
+    }
+    
+    private Product randomProduct(String id, String brand, Random random) {
+        Product product = product(id, brand, "c" + random.nextInt(4), random.nextInt(50) + ".00", null,
+                random.nextInt(5), random.nextInt(3), random.nextInt(30));
+        product.setName(random.nextInt(10) == 0 ? null : "Name " + random.nextInt(20));
+        return product;
+    }
+    
+    private static Comparator<Product> order(String sortBy, String sortDir) {
+        Comparator<Product> bySortField = switch (sortBy == null ? "createdAt" : sortBy) {
+            case "price" -> Comparator.comparing(Product::getPrice);
+            case "averageRating" -> Comparator.comparingDouble(Product::getAverageRating);
+            case "name" -> Comparator.comparing(Product::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
+            default -> Comparator.comparing(Product::getCreatedAt);
+        };
+        Comparator<Product> order = bySortField.thenComparing(Product::getId);
+        return "asc".equals(sortDir) ? order : order.reversed();
+    }
+    
+    private Product product(String id, String brand, String categoryId, String price, String discountPrice,
+                            double rating, int stock, int minutes) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .brand(brand)
+                .categoryId(categoryId)
+                .categoryName(categoryId.toUpperCase())
+                .price(new BigDecimal(price))
+                .discountPrice(discountPrice != null ? new BigDecimal(discountPrice) : null)
+                .averageRating(rating)
+                .stockQuantity(stock)
+                .createdAt(now.plusMinutes(minutes))
+                .build();
+    }
+}
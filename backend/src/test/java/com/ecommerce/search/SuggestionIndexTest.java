@@ -0,0 +1,65 @@
+package com.ecommerce.search;
+
+import com.ecommerce.search.ProductSuggester.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionIndexTest {
+    
+    @Test
+    void completesFromAnyWordHeaviestFirst() {
+        SuggestionIndex index = new SuggestionIndex.Builder()
+                .add("Nike Running Shoe", Suggestion.Type.PRODUCT, "p1", 5)
+                .add("Trail Running Jacket", Suggestion.Type.PRODUCT, "p2", 9)
+                .add("Runner Socks", Suggestion.Type.PRODUCT, "p3", 1)
+                .build();
+        
+        assertThat(texts(index.complete("run", 10)))
+                .containsExactly("Trail Running Jacket", "Nike Running Shoe", "Runner Socks");
+        assertThat(texts(index.complete("shoe", 10))).containsExactly("Nike Running Shoe");
+        assertThat(texts(index.complete("running j", 10))).containsExactly("Trail Running Jacket");
+    }
+    
+    @Test
+    void returnsEachSuggestionOnceUpToTheLimit() {
+        SuggestionIndex index = new SuggestionIndex.Builder()
+                .add("Red Red Wine Glass", Suggestion.Type.PRODUCT, "p1", 3)
+                .add("Red Lamp", Suggestion.Type.PRODUCT, "p2", 2)
+                .add("Red Chair", Suggestion.Type.PRODUCT, "p3", 1)
+                .build();
+        
+        assertThat(texts(index.complete("red", 10))).containsExactly("Red Red Wine Glass", "Red Lamp", "Red Chair");
+        assertThat(texts(index.complete("red", 2))).containsExactly("Red Red Wine Glass", "Red Lamp");
+    }
+    
+    @Test
+    void mergesTheWeightOfRepeatedBrandsAndCategories() {
+        SuggestionIndex index = new SuggestionIndex.Builder()
+                .add("Acme", Suggestion.Type.BRAND, null, 1)
+                .add("Acorn", Suggestion.Type.BRAND, null, 2)
+                .add("ACME ", Suggestion.Type.BRAND, null, 2)
+                .build();
+        
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(texts(index.complete("ac", 10))).containsExactly("Acme", "Acorn");
+    }
+    
+    @Test
+    void findsNothingForUnknownOrEmptyPrefixes() {
+        SuggestionIndex index = new SuggestionIndex.Builder()
+                .add("Desk Lamp", Suggestion.Type.PRODUCT, "p1", 1)
+                .build();
+        
+        assertThat(index.complete("zebra", 10)).isEmpty();
+        assertThat(index.complete("", 10)).isEmpty();
+        assertThat(index.complete("desk", 0)).isEmpty();
+        assertThat(SuggestionIndex.EMPTY.complete("desk", 10)).isEmpty();
+    }
+    
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::text).toList();
+    }
+}
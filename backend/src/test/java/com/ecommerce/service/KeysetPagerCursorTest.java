@@ -0,0 +1,59 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.BadRequestException;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetPagerCursorTest {
+    
+    @Test
+    void roundTripsEachSortValueType() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_000_000);
+        
+        assertThat(roundTrip(new KeysetPager.Cursor(createdAt, "id1"))).isEqualTo(new KeysetPager.Cursor(createdAt, "id1"));
+        assertThat(roundTrip(new KeysetPager.Cursor(4.5, "id2"))).isEqualTo(new KeysetPager.Cursor(4.5, "id2"));
+        assertThat(roundTrip(new KeysetPager.Cursor(null, "id3"))).isEqualTo(new KeysetPager.Cursor(null, "id3"));
+        assertThat(roundTrip(new KeysetPager.Cursor("a:b:c", "id4"))).isEqualTo(new KeysetPager.Cursor("a:b:c", "id4"));
+    }
+    
+    @Test
+    void decodesDecimalsAsDecimal128SoTheyCompareWithStoredPrices() {
+        KeysetPager.Cursor decoded = roundTrip(new KeysetPager.Cursor(new BigDecimal("19.90"), "id1"));
+        
+        assertThat(decoded.value()).isEqualTo(new Decimal128(new BigDecimal("19.90")));
+        assertThat(decoded.id()).isEqualTo("id1");
+    }
+    
+    @Test
+    void isUrlSafe() {
+        String encoded = new KeysetPager.Cursor("???>>>", "id1").encode();
+        
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+    
+    @Test
+    void rejectsTamperedCursorsAsBadRequests() {
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode("not base64!")).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode(encode("x:id:1"))).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode(encode("t:id:yesterday"))).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode(encode("f:id:many"))).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode(encode("s"))).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> KeysetPager.Cursor.decode(encode("s:no-value-separator"))).isInstanceOf(BadRequestException.class);
+    }
+    
+    private static KeysetPager.Cursor roundTrip(KeysetPager.Cursor cursor) {
+        return KeysetPager.Cursor.decode(cursor.encode());
+    }
+    
+    private static String encode(String payload) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
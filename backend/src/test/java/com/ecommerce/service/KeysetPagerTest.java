@@ -0,0 +1,87 @@
+package com.ecommerce.service;
+
+import com.ecommerce.TestMongo;
+import com.ecommerce.dto.response.CursorPageResponse;
+import com.ecommerce.model.Product;
+import com.mongodb.client.MongoClient;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeysetPagerTest {
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void tieBreaksOnObjectIdsRatherThanTheirHexStrings() {
+        String id = new ObjectId().toHexString();
+
+        Document criteria = KeysetPager.after(new KeysetPager.Cursor(0, id), "reviewCount", Sort.Direction.DESC)
+                .getCriteriaObject();
+
+        assertThat(criteria.toJson()).contains("{\"$lt\": {\"$oid\": \"" + id + "\"}}");
+    }
+
+    @Test
+    void pagesPastARunOfEqualSortValues() {
+        client = TestMongo.client();
+        mongoTemplate = TestMongo.scratchTemplate(client);
+        KeysetPager pager = new KeysetPager(mongoTemplate);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Most of the catalog has no reviews or discount yet, so the sort value repeats across pages
+            boolean tied = i < 20;
+            products.add(mongoTemplate.insert(Product.builder()
+                    .name("Product " + i)
+                    .price(BigDecimal.TEN)
+                    .reviewCount(tied ? 0 : i)
+                    .averageRating(tied ? 0.0 : i / 10.0)
+                    .discountPercentage(tied ? 0 : i)
+                    .build()));
+        }
+
+        for (ProductSort sort : List.of(ProductSort.POPULARITY, ProductSort.RATING, ProductSort.DISCOUNT)) {
+            List<String> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                CursorPageResponse<Product> page = pager.page(new Query(Criteria.where("active").is(true)),
+                        Product.class, sort.field(), sort.direction(), cursor, 7,
+                        sort::sortValue, Product::getId, KeysetPager.Total.NONE);
+                page.getContent().forEach(product -> paged.add(product.getId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            List<String> expected = products.stream()
+                    .sorted(Comparator.comparingDouble((Product product) -> ((Number) sort.sortValue(product)).doubleValue())
+                            .thenComparing(Product::getId)
+                            .reversed())
+                    .map(Product::getId)
+                    .toList();
+            assertThat(paged).as(sort.key()).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecommerce.service;
+
+import com.ecommerce.TestMongo;
+import com.ecommerce.model.Product;
+import com.ecommerce.search.ProductFacetEngine;
+import com.mongodb.client.MongoClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hundreds of shoppers checking out the same SKU at once must never take more units than
+ * are in stock. Runs against the MongoDB given by {@link TestMongo}.
+ */
+class StockServiceContentionTest {
+    
+    private static final int STOCK = 100;
+    private static final int SHOPPERS = 500;
+    
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private StockService stockService;
+    
+    @BeforeEach
+    void setUp() {
+        client = TestMongo.client();
+        mongoTemplate = TestMongo.scratchTemplate(client);
+        stockService = new StockService(mongoTemplate, mock(DashboardService.class),
+                mock(ProductBatchLoader.class), mock(ProductFacetEngine.class));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+    
+    @Test
+    void concurrentCheckoutsOfOneSkuNeverOversell() throws Exception {
+        mongoTemplate.insert(product("sku-1", STOCK));
+        
+        List<Future<Product>> results = checkOut("sku-1", 1, SHOPPERS);
+        
+        long succeeded = 0;
+        for (Future<Product> result : results) {
+            if (result.get() != null) {
+                succeeded++;
+            }
+        }
+        assertThat(succeeded).isEqualTo(STOCK);
+        assertThat(mongoTemplate.findById("sku-1", Product.class).getStockQuantity()).isZero();
+    }
+    
+    @Test
+    void concurrentMultiUnitCheckoutsTakeOnlyWhatFits() throws Exception {
+        mongoTemplate.insert(product("sku-2", STOCK));
+        
+        List<Future<Product>> results = checkOut("sku-2", 3, SHOPPERS);
+        
+        long succeeded = 0;
+        for (Future<Product> result : results) {
+            Product product = result.get();
+            if (product != null) {
+                succeeded++;
+                assertThat(product.getStockQuantity()).isNotNegative();
+            }
+        }
+        assertThat(succeeded).isEqualTo(STOCK / 3);
+        assertThat(mongoTemplate.findById("sku-2", Product.class).getStockQuantity()).isEqualTo(STOCK % 3);
+    }
+    
+    private List<Future<Product>> checkOut(String productId, int quantity, int shoppers) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Product>> results = new ArrayList<>(shoppers);
+        try {
+            for (int i = 0; i < shoppers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return stockService.decrementStock(productId, quantity);
+                }));
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        return results;
+    }
+    
+    private static Product product(String id, int stock) {
+        return Product.builder()
+                .id(id)
+                .name("Contended " + id)
+                .price(new BigDecimal("10.00"))
+                .stockQuantity(stock)
+                .build();
+    }
+}
@@ -19,6 +19,7 @@ import {
 import { useAuthStore } from '../../store/authStore';
 import { useCartStore } from '../../store/cartStore';
 import { useWishlistStore } from '../../store/wishlistStore';
+import { productsAPI } from '../../services/api';
 
 export default function Navbar() {
   const [isMenuOpen, setIsMenuOpen] = useState(false);
@@ -27,6 +28,7 @@ export default function Navbar() {
   const [accent, setAccent] = useState('blue');
   const [isScrolled, setIsScrolled] = useState(false);
   const [isSearchFocused, setIsSearchFocused] = useState(false);
+  const [suggestions, setSuggestions] = useState([]);
   
   const { isAuthenticated, user, logout, isAdmin } = useAuthStore();
   const { getItemCount, fetchCart } = useCartStore();
@@ -78,6 +80,28 @@ export default function Navbar() {
     }
   }, [isDark]);
 
+  // Typeahead suggestions, debounced so fast typing sends one request per pause
+  useEffect(() => {
+    const query = searchQuery.trim();
+    if (query.length < 2) {
+      setSuggestions([]);
+      return undefined;
+    }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      try {
+        const response = await productsAPI.suggest(query, { limit: 6 });
+        if (!cancelled) setSuggestions(response.data.data || []);
+      } catch (error) {
+        if (!cancelled) setSuggestions([]);
+      }
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [searchQuery]);
+
   // Close mobile menu on route change
   useEffect(() => {
     setIsMenuOpen(false);
@@ -88,10 +112,22 @@ export default function Navbar() {
     if (searchQuery.trim()) {
       navigate(`/products?search=${encodeURIComponent(searchQuery)}`);
       setSearchQuery('');
+      setSuggestions([]);
       setIsSearchFocused(false);
     }
   };
 
+  const handleSuggestion = (suggestion) => {
+    if (suggestion.type === 'PRODUCT' && suggestion.productId) {
+      navigate(`/products/${suggestion.productId}`);
+    } else {
+      navigate(`/products?search=${encodeURIComponent(suggestion.text)}`);
+    }
+    setSearchQuery('');
+    setSuggestions([]);
+    setIsSearchFocused(false);
+  };
+
   const handleLogout = () => {
     logout();
     navigate('/');
@@ -181,6 +217,32 @@ export default function Navbar() {
               <MagnifyingGlassIcon className={`absolute left-3.5 top-1/2 -translate-y-1/2 h-5 w-5 transition-colors ${
                 isSearchFocused ? 'text-primary-500' : 'text-gray-400'
               }`} />
+              {isSearchFocused && suggestions.length > 0 && (
+                <ul className="absolute left-0 right-0 top-full mt-2 py-2 bg-white dark:bg-gray-800 rounded-xl shadow-lg
+                              border border-gray-100 dark:border-gray-700 z-50">
+                  {suggestions.map((suggestion) => (
+                    <li key={`${suggestion.type}-${suggestion.productId || suggestion.text}`}>
+                      <button
+                        type="button"
+                        // mousedown fires before the input's blur hides the list
+                        onMouseDown={(e) => {
+                          e.preventDefault();
+                          handleSuggestion(suggestion);
+                        }}
+                        className="w-full flex items-center justify-between px-4 py-2 text-left text-sm
+                                  text-gray-700 dark:text-gray-200 hover:bg-gray-50 dark:hover:bg-gray-700"
+                      >
+                        <span className="truncate">{suggestion.text}</span>
+                        {suggestion.type !== 'PRODUCT' && (
+                          <span className="ml-3 text-xs text-gray-400 capitalize">
+                            {suggestion.type.toLowerCase()}
+                          </span>
+                        )}
+                      </button>
+                    </li>
+                  ))}
+                </ul>
+              )}
             </div>
           </form>
 
@@ -8,7 +8,8 @@ import {
   StarIcon,
   TruckIcon,
   ShieldCheckIcon,
-  ArrowPathIcon
+  ArrowPathIcon,
+  CheckBadgeIcon
 } from '@heroicons/react/24/outline';
 import { StarIcon as StarIconSolid } from '@heroicons/react/24/solid';
 import LoadingSpinner from '../components/ui/LoadingSpinner';
@@ -34,6 +35,7 @@ export default function ProductDetails() {
   const [isLoading, setIsLoading] = useState(true);
   const [activeTab, setActiveTab] = useState('description');
   const [isInWishlistState, setIsInWishlistState] = useState(false);
+  const [hasPurchased, setHasPurchased] = useState(false);
 
   useEffect(() => {
     const fetchProduct = async () => {
@@ -58,6 +60,16 @@ export default function ProductDetails() {
     fetchProduct();
   }, [id, navigate]);
 
+  useEffect(() => {
+    if (!isAuthenticated) {
+      setHasPurchased(false);
+      return;
+    }
+    productsAPI.getPurchaseStatus(id)
+      .then((res) => setHasPurchased(Boolean(res.data.data?.purchased)))
+      .catch(() => setHasPurchased(false));
+  }, [id, isAuthenticated]);
+
   const handleAddToCart = async () => {
     if (!isAuthenticated) {
       navigate('/login');
@@ -164,6 +176,13 @@ export default function ProductDetails() {
             </span>
           </div>
 
+          {hasPurchased && (
+            <div className="inline-flex items-center gap-1 text-sm font-medium text-green-700 dark:text-green-400 bg-green-50 dark:bg-green-900/30 rounded-full px-3 py-1 mb-6">
+              <CheckBadgeIcon className="h-5 w-5" />
+              You bought this
+            </div>
+          )}
+
           {/* Price */}
           <div className="flex items-center gap-4 mb-6">
             {product.discountPrice ? (
@@ -25,6 +25,7 @@ export default function Products() {
   const page = parseInt(searchParams.get('page') || '0');
   const searchQuery = searchParams.get('search') || '';
   const isFeatured = searchParams.get('featured') === 'true';
+  const explicitSort = searchParams.get('sortBy');
 
   useEffect(() => {
     setFilters((prev) => ({
@@ -62,18 +63,19 @@ export default function Products() {
           sortDir: filters.sortDir,
         };
 
-        if (searchQuery) {
-          response = await productsAPI.search(searchQuery, params);
-        } else if (isFeatured) {
+        if (isFeatured) {
           response = await productsAPI.getFeatured(params);
-        } else if (filters.category) {
-          response = await productsAPI.getByCategory(filters.category, params);
-        } else if (filters.minRating) {
-          response = await productsAPI.filterByRating({ minRating: filters.minRating, ...params });
-        } else if (filters.minPrice !== '' && filters.maxPrice !== '') {
-          response = await productsAPI.filterByPrice({ min: filters.minPrice, max: filters.maxPrice, ...params });
         } else {
-          response = await productsAPI.getAll(params);
+          // One request combines the search text with every active filter
+          response = await productsAPI.query({
+            ...params,
+            q: searchQuery || undefined,
+            categoryId: filters.category || undefined,
+            minPrice: filters.minPrice !== '' ? filters.minPrice : undefined,
+            maxPrice: filters.maxPrice !== '' ? filters.maxPrice : undefined,
+            minRating: filters.minRating || undefined,
+            sortBy: searchQuery && !explicitSort ? 'relevance' : filters.sortBy,
+          });
         }
 
         setProducts(response.data.data.content || []);
@@ -86,7 +88,7 @@ export default function Products() {
       }
     };
     fetchProducts();
-  }, [page, searchQuery, filters, isFeatured]);
+  }, [page, searchQuery, filters, isFeatured, explicitSort]);
 
   const handleFilterChange = (key, value) => {
     const newFilters = { ...filters, [key]: value };
@@ -25,12 +25,43 @@ api.interceptors.request.use(
   }
 );
 
+// Shared by concurrent requests that fail with 401, so a refresh token is only used once
+let refreshPromise = null;
+
+const refreshSession = () => {
+  if (!refreshPromise) {
+    const { refreshToken } = useAuthStore.getState();
+    refreshPromise = axios
+      .post(`${API_URL}/auth/refresh`, { refreshToken })
+      .then((response) => {
+        useAuthStore.getState().setTokens(response.data.data);
+        return response.data.data.token;
+      })
+      .finally(() => {
+        refreshPromise = null;
+      });
+  }
+  return refreshPromise;
+};
+
 // Response interceptor to handle errors
 api.interceptors.response.use(
   (response) => response,
-  (error) => {
-    if (error.response?.status === 401) {
-      useAuthStore.getState().logout();
+  async (error) => {
+    const original = error.config;
+    const isAuthCall = original?.url?.startsWith('/auth/');
+    if (error.response?.status === 401 && !isAuthCall) {
+      if (useAuthStore.getState().refreshToken && !original._retried) {
+        original._retried = true;
+        try {
+          const token = await refreshSession();
+          original.headers.Authorization = `Bearer ${token}`;
+          return api(original);
+        } catch (refreshError) {
+          // Fall through to signing out
+        }
+      }
+      useAuthStore.getState().clearSession();
       if (window.location.pathname !== '/login') {
         window.location.href = '/login';
       }
@@ -46,7 +77,8 @@ export const authAPI = {
   login: (data) => api.post('/auth/login', data),
   demo: () => api.post('/auth/demo'),
   register: (data) => api.post('/auth/register', data),
-  refreshToken: () => api.post('/auth/refresh'),
+  refreshToken: (refreshToken) => api.post('/auth/refresh', { refreshToken }),
+  logout: (refreshToken) => api.post('/auth/logout', { refreshToken }),
   forgotPassword: (email) => api.post('/auth/forgot-password', { email }),
   resetPassword: (data) => api.post('/auth/reset-password', data),
 };
@@ -60,6 +92,9 @@ export const productsAPI = {
   getNewArrivals: (params) => api.get('/products/new-arrivals', { params }),
   getBestSellers: (params) => api.get('/products/best-sellers', { params }),
   search: (query, params) => api.get('/products/search', { params: { q: query, ...params } }),
+  query: (params) => api.get('/products/query', { params, paramsSerializer: { indexes: null } }),
+  suggest: (query, params) => api.get('/products/suggest', { params: { q: query, ...params } }),
+  getPurchaseStatus: (id) => api.get(`/products/${id}/purchase-status`),
   getRelated: (productId, params) => api.get(`/products/${productId}/related`, { params }),
   filterByPrice: (params) => api.get('/products/filter/price', { params }),
   filterByRating: (params) => api.get('/products/filter/rating', { params }),
@@ -102,6 +137,7 @@ export const ordersAPI = {
   getAll: (params) => api.get('/orders', { params }),
   getMyOrders: (params) => api.get('/orders', { params }),
   getById: (id) => api.get(`/orders/${id}`),
+  getByNumber: (orderNumber) => api.get(`/orders/number/${orderNumber}`),
   cancel: (id) => api.post(`/orders/${id}/cancel`),
   reorder: (id) => api.post(`/orders/${id}/reorder`),
   downloadInvoice: (id) => api.get(`/orders/${id}/invoice`, { responseType: 'blob' }),
@@ -155,6 +191,8 @@ export const adminAPI = {
   getOrdersChart: (period) => api.get('/admin/dashboard/orders-chart', { params: { period } }),
   getTopProducts: (limit) => api.get('/admin/dashboard/top-products', { params: { limit } }),
   getRecentActivity: (limit) => api.get('/admin/dashboard/recent-activity', { params: { limit } }),
+  getSalesTimeseries: (params) => api.get('/admin/analytics/timeseries', { params }),
+  rebuildSalesRollups: () => api.post('/admin/analytics/rebuild'),
   
   // Products
   getProducts: (params) => api.get('/admin/products', { params }),
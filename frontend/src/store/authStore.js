@@ -7,6 +7,7 @@ export const useAuthStore = create(
     (set, get) => ({
       user: null,
       token: null,
+      refreshToken: null,
       isAuthenticated: false,
       isLoading: false,
       error: null,
@@ -15,10 +16,11 @@ export const useAuthStore = create(
         set({ isLoading: true, error: null });
         try {
           const response = await authAPI.login(credentials);
-          const { token, user } = response.data.data;
+          const { token, refreshToken, user } = response.data.data;
           set({
             user,
             token,
+            refreshToken,
             isAuthenticated: true,
             isLoading: false,
           });
@@ -36,10 +38,11 @@ export const useAuthStore = create(
         set({ isLoading: true, error: null });
         try {
           const response = await authAPI.demo();
-          const { token, user } = response.data.data;
+          const { token, refreshToken, user } = response.data.data;
           set({
             user,
             token,
+            refreshToken,
             isAuthenticated: true,
             isLoading: false,
           });
@@ -57,10 +60,11 @@ export const useAuthStore = create(
         set({ isLoading: true, error: null });
         try {
           const response = await authAPI.register(userData);
-          const { token, user } = response.data.data;
+          const { token, refreshToken, user } = response.data.data;
           set({
             user,
             token,
+            refreshToken,
             isAuthenticated: true,
             isLoading: false,
           });
@@ -75,13 +79,32 @@ export const useAuthStore = create(
       },
 
       logout: () => {
+        const { token, refreshToken } = get();
+        if (token || refreshToken) {
+          // Best effort: the session is cleared locally whether or not the server is reachable
+          authAPI.logout(refreshToken).catch(() => {});
+        }
+        get().clearSession();
+      },
+
+      clearSession: () => {
         set({
           user: null,
           token: null,
+          refreshToken: null,
           isAuthenticated: false,
         });
       },
 
+      setTokens: ({ token, refreshToken, user }) => {
+        set((state) => ({
+          token,
+          refreshToken,
+          user: user || state.user,
+          isAuthenticated: true,
+        }));
+      },
+
       updateProfile: async (data) => {
         set({ isLoading: true, error: null });
         try {
@@ -120,6 +143,7 @@ export const useAuthStore = create(
       partialize: (state) => ({
         user: state.user,
         token: state.token,
+        refreshToken: state.refreshToken,
         isAuthenticated: state.isAuthenticated,
       }),
     }